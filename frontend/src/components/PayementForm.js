@@ -53,31 +53,31 @@ function PaymentForm({ cart = [], setCart, total }) {
   const validateStock = async () => {
     if (!cart || cart.length === 0) return null;
 
-    const itemsWithLatestStock = await Promise.all(
-      cart.map(async (item) => {
-        const stockId =
-          (item.id != null ? item.id.toString() : null) ?? item.productID;
+    const stockIdOf = (item) =>
+      (item.id != null ? item.id.toString() : null) ?? item.productID;
 
-        if (!stockId) {
-          return { item, latestStock: item.stock };
-        }
+    // One batched request for the whole cart instead of one per item
+    const stockIds = [...new Set(cart.map(stockIdOf).filter(Boolean))];
+    let latestStocks = {};
+    if (stockIds.length > 0) {
+      try {
+        const query = stockIds.map(encodeURIComponent).join(",");
+        const res = await fetch(`${API_BASE}/products/stock?ids=${query}`);
+        if (!res.ok) throw new Error("Failed to fetch stock");
+        latestStocks = await res.json();
+      } catch (err) {
+        console.error("Error fetching latest stock for", stockIds, err);
+        // Fallback to whatever stock we had on the items
+      }
+    }
 
-        try {
-          const res = await fetch(`${API_BASE}/products/stock/${stockId}`);
-          if (!res.ok) throw new Error("Failed to fetch stock");
-          const text = await res.text();
-          const latestStock = Number.parseInt(text, 10);
-          return {
-            item,
-            latestStock: Number.isNaN(latestStock) ? item.stock : latestStock,
-          };
-        } catch (err) {
-          console.error("Error fetching latest stock for", stockId, err);
-          // Fallback to whatever stock we had on the item
-          return { item, latestStock: item.stock };
-        }
-      })
-    );
+    const itemsWithLatestStock = cart.map((item) => {
+      const latestStock = latestStocks[stockIdOf(item)];
+      return {
+        item,
+        latestStock: typeof latestStock === "number" ? latestStock : item.stock,
+      };
+    });
 
     const outOfStock = itemsWithLatestStock.filter(
       ({ latestStock }) => typeof latestStock === "number" && latestStock <= 0
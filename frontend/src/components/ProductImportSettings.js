@@ -24,6 +24,45 @@ async function getJsonOrText(res) {
   return await res.text();
 }
 
+// Reads a Server-Sent-Events stream with fetch, since EventSource cannot send the
+// Authorization header. Calls onEvent(name, data) for every event until the stream
+// ends or the signal aborts.
+async function streamEvents(url, onEvent, signal) {
+  const res = await fetch(url, {
+    method: "GET",
+    credentials: "include",
+    headers: { ...authHeaders(), Accept: "text/event-stream" },
+    signal,
+  });
+  if (!res.ok || !res.body) throw new Error(`HTTP ${res.status}`);
+  const reader = res.body.getReader();
+  const decoder = new TextDecoder();
+  let buffer = "";
+  for (;;) {
+    const { value, done } = await reader.read();
+    if (done) return;
+    buffer += decoder.decode(value, { stream: true });
+    let sep;
+    while ((sep = buffer.search(/\r?\n\r?\n/)) >= 0) {
+      const block = buffer.slice(0, sep);
+      buffer = buffer.slice(sep).replace(/^\r?\n\r?\n/, "");
+      let name = "message";
+      const data = [];
+      for (const line of block.split(/\r?\n/)) {
+        if (line.startsWith("event:")) name = line.slice(6).trim();
+        else if (line.startsWith("data:")) data.push(line.slice(5).trimStart());
+      }
+      if (data.length) {
+        try {
+          onEvent(name, JSON.parse(data.join("\n")));
+        } catch {
+          // ignore malformed events
+        }
+      }
+    }
+  }
+}
+
 // Helper to format timestamps as readable string
 function formatDate(val) {
   if (!val) return "";
@@ -228,6 +267,7 @@ const ProductSyncSettings = () => {
   const [lastImport, setLastImport] = useState(null);
   const [statusLabel, setStatusLabel] = useState("Idle");
   const [isEditing, setIsEditing] = useState(false);
+  const [job, setJob] = useState(null);
   const stoppedDuringEdit = useRef(false);
   const fileInputRef = useRef(null);
   const endpointInputRef = useRef(null);
@@ -244,12 +284,32 @@ const ProductSyncSettings = () => {
     fetchStatus();
     // eslint-disable-next-line
   }, []);
+  // Live progress of all import jobs (manual and scheduled); reconnects after errors.
   useEffect(() => {
-    if (isEditing || !isRunning) return; // only poll when running and not editing
-    const t = setInterval(fetchStatus, 5000);
-    return () => clearInterval(t);
-    // eslint-disable-next-line react-hooks/exhaustive-deps
-  }, [isEditing, isRunning]);
+    const controller = new AbortController();
+    let retry;
+    const connect = () => {
+      streamEvents(
+        `${BASE_URL}/import/admin/events`,
+        (name, data) => {
+          setJob(data);
+          if (name === "done" && data.status === "SUCCEEDED") {
+            setLastImport(formatDate(data.finishedAt));
+          }
+        },
+        controller.signal
+      )
+        .catch(() => {})
+        .finally(() => {
+          if (!controller.signal.aborted) retry = setTimeout(connect, 5000);
+        });
+    };
+    connect();
+    return () => {
+      controller.abort();
+      clearTimeout(retry);
+    };
+  }, []);
 
   useEffect(() => {
     const data = { endpoint, username, password, period, lastImport };
@@ -464,8 +524,9 @@ const ProductSyncSettings = () => {
         headers: authHeaders(),
         body: JSON.stringify({ endpoint, username, password }),
       });
-      const msg = await res.text();
+      const payload = await getJsonOrText(res);
       if (!res.ok) {
+        const msg = typeof payload === "string" ? payload : "";
         setNotice({
           type: "error",
           text: `Run failed: HTTP ${res.status} ${res.statusText} — ${
@@ -474,11 +535,9 @@ const ProductSyncSettings = () => {
         });
         return;
       }
-      await fetchStatus();
-      setLastImport(formatDate(new Date()));
       setNotice({
         type: "success",
-        text: normalizeBackendMessage(msg || "Executed"),
+        text: `Import job started (${payload?.jobId ?? "unknown id"})`,
       });
     } catch (e) {
       setNotice({ type: "error", text: e?.message || "Run failed" });
@@ -802,6 +861,43 @@ const ProductSyncSettings = () => {
               </ActionBtn>
             </div>
 
+            {/* Current / last import job */}
+            {job && (
+              <div
+                style={{
+                  gridColumn: "1 / -1",
+                  padding: "12px 14px",
+                  borderRadius: 10,
+                  border: `1px solid ${tone.border}`,
+                  color: tone.subtext,
+                  fontSize: 13,
+                  display: "flex",
+                  gap: 24,
+                  flexWrap: "wrap",
+                }}
+              >
+                <div>
+                  <span style={{ color: tone.text }}>Job:</span> {job.status}
+                  {job.phase ? ` — ${job.phase.toLowerCase()}` : ""}
+                </div>
+                <div>
+                  <span style={{ color: tone.text }}>Rows:</span> {job.rowsRead}{" "}
+                  read, {job.rowsWritten} written, {job.rowsDeleted} deleted
+                </div>
+                <div>
+                  <span style={{ color: tone.text }}>Throughput:</span>{" "}
+                  {job.rowsPerSecond} rows/s
+                </div>
+                <div>
+                  <span style={{ color: tone.text }}>Duration:</span>{" "}
+                  {(job.durationMs / 1000).toFixed(1)} s
+                </div>
+                {job.error && (
+                  <div style={{ color: "#fca5a5" }}>{job.error}</div>
+                )}
+              </div>
+            )}
+
             {/* Meta */}
             {lastImport && (
               <div
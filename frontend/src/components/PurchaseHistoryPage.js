@@ -19,15 +19,36 @@ function StatusBadge({ status }) {
   );
 }
 
+const PAGE_SIZE = 20;
+
 export default function PurchaseHistoryPage() {
   const [orders, setOrders] = useState([]);
+  const [nextPageToken, setNextPageToken] = useState(null);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
   const [error, setError] = useState(null);
 
   const customer = JSON.parse(localStorage.getItem("customer"));
   const token = localStorage.getItem("authToken");
   const BASE_URL = "http://localhost:8080"; // uses your backend base
 
+  // pageToken is null for the first page
+  const fetchPage = async (pageToken) => {
+    const params = new URLSearchParams({ pageSize: PAGE_SIZE });
+    if (pageToken) params.set("pageToken", pageToken);
+    const res = await fetch(`${BASE_URL}/orders/customer/${customer.id}?${params}`, {
+      method: "GET",
+      credentials: "include",
+      headers: {
+        Authorization: `Bearer ${token}`,
+      },
+    });
+    if (!res.ok) throw new Error(`HTTP ${res.status}`);
+    const data = await res.json();
+    setOrders((prev) => [...prev, ...(Array.isArray(data?.orders) ? data.orders : [])]);
+    setNextPageToken(data?.nextPageToken ?? null);
+  };
+
   useEffect(() => {
     const load = async () => {
       try {
@@ -35,16 +56,7 @@ export default function PurchaseHistoryPage() {
           setLoading(false);
           return;
         }
-        const res = await fetch(`${BASE_URL}/orders/customer/${customer.id}`, {
-          method: "GET",
-          credentials: "include",
-          headers: {
-            Authorization: `Bearer ${token}`,
-          },
-        });
-        if (!res.ok) throw new Error(`HTTP ${res.status}`);
-        const data = await res.json();
-        setOrders(Array.isArray(data) ? data : []);
+        await fetchPage(null);
       } catch (e) {
         setError(e.message || "Failed to load orders");
       } finally {
@@ -55,6 +67,17 @@ export default function PurchaseHistoryPage() {
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, []);
 
+  const loadMore = async () => {
+    setLoadingMore(true);
+    try {
+      await fetchPage(nextPageToken);
+    } catch (e) {
+      setError(e.message || "Failed to load orders");
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   if (!customer) return <p>Please sign in first.</p>;
   if (loading) return <p>Loading orders…</p>;
   if (error) return <p style={{ color: "#dc3545" }}>Error: {error}</p>;
@@ -86,6 +109,15 @@ export default function PurchaseHistoryPage() {
           })}
         </ul>
       )}
+      {nextPageToken && (
+        <button
+          className="btn btn-outline-secondary mt-3"
+          onClick={loadMore}
+          disabled={loadingMore}
+        >
+          {loadingMore ? "Loading…" : "Load more"}
+        </button>
+      )}
     </div>
   );
 }
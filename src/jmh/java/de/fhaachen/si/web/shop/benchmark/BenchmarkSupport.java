@@ -0,0 +1,38 @@
+package de.fhaachen.si.web.shop.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Helpers for running Spring beans outside an application context.
+ */
+public final class BenchmarkSupport {
+
+	private BenchmarkSupport() {
+	}
+
+	/**
+	 * Sets an injected field (an {@code @Autowired} dependency or an {@code @Value} setting)
+	 * on a bean that was created with {@code new}.
+	 */
+	public static <T> T inject(T bean, String fieldName, Object value) {
+		Field field = ReflectionUtils.findField(bean.getClass(), fieldName);
+		if (field == null) {
+			throw new IllegalArgumentException(bean.getClass().getName() + " has no field " + fieldName);
+		}
+		ReflectionUtils.makeAccessible(field);
+		ReflectionUtils.setField(field, bean, value);
+		return bean;
+	}
+
+	/**
+	 * The services log every chunk to stdout; in a benchmark that would measure the console.
+	 * JMH reports results from the forked JVM through its own channel, so this does not hide them.
+	 */
+	public static void muteStdout() {
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+}
@@ -0,0 +1,100 @@
+package de.fhaachen.si.web.shop.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import de.fhaachen.si.web.shop.entity.Product;
+import de.fhaachen.si.web.shop.repository.ProductBulkRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * A throwaway Postgres per benchmark fork with the product table as Hibernate creates it.
+ * The bulk SQL uses Postgres syntax ({@code ON CONFLICT}, {@code = ANY (?)}), so an
+ * in-memory database in compatibility mode would not run the same statements.
+ */
+@State(Scope.Benchmark)
+public class EmbeddedDatabase {
+
+	private static final String SCHEMA = """
+			CREATE SEQUENCE product_seq START WITH 1 INCREMENT BY 50;
+			CREATE TABLE product (
+				id bigint NOT NULL PRIMARY KEY,
+				description varchar(255),
+				image_url varchar(255),
+				name varchar(255),
+				price float(53) NOT NULL,
+				product_id varchar(255) UNIQUE,
+				stock integer NOT NULL
+			);
+			""";
+
+	private EmbeddedPostgres postgres;
+
+	private HikariDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ProductBulkRepository productBulkRepository;
+
+	@Setup(Level.Trial)
+	public void start() throws IOException {
+		postgres = EmbeddedPostgres.start();
+		dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl(postgres.getJdbcUrl("postgres", "postgres"));
+		dataSource.setMaximumPoolSize(8);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute(SCHEMA);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		productBulkRepository = new TransactionalProductBulkRepository(transactionTemplate);
+		BenchmarkSupport.inject(productBulkRepository, "jdbcTemplate", jdbcTemplate);
+		BenchmarkSupport.inject(productBulkRepository, "batchSize", 500);
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws IOException {
+		dataSource.close();
+		postgres.close();
+	}
+
+	public ProductBulkRepository getProductBulkRepository() {
+		return productBulkRepository;
+	}
+
+	public void truncateProducts() {
+		jdbcTemplate.execute("TRUNCATE product");
+	}
+
+	/**
+	 * Adds the per-chunk transactions that Spring's proxy applies in the application.
+	 */
+	private static final class TransactionalProductBulkRepository extends ProductBulkRepository {
+
+		private final TransactionTemplate transactionTemplate;
+
+		TransactionalProductBulkRepository(TransactionTemplate transactionTemplate) {
+			this.transactionTemplate = transactionTemplate;
+		}
+
+		@Override
+		public List<String> upsertAll(List<Product> products) {
+			return transactionTemplate.execute(status -> super.upsertAll(products));
+		}
+
+		@Override
+		public void upsertAllById(List<Product> products) {
+			transactionTemplate.executeWithoutResult(status -> super.upsertAllById(products));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package de.fhaachen.si.web.shop.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Deterministic product catalogs of a given size in the formats the shop imports: the
+ * ERP's JSON file and the admin CSV upload. Files are generated once per size and kept
+ * in {@code java.io.tmpdir/web-shop-jmh}, so forks and later runs reuse them.
+ */
+public final class GeneratedCatalog {
+
+	private static final Path DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "web-shop-jmh");
+
+	private static final String[] WORDS = { "Chair", "Desk", "Lamp", "Shelf", "Table", "Sofa", "Cable", "Monitor",
+			"Keyboard", "Mouse", "Bag", "Bottle", "Pen", "Notebook", "Speaker" };
+
+	private GeneratedCatalog() {
+	}
+
+	/**
+	 * A JSON array of ERP products ({@code productID}, {@code name}, {@code description},
+	 * {@code price} as {@code "12.34 EUR"}, {@code stock}).
+	 */
+	public static synchronized Path json(int size) throws IOException {
+		Path file = DIRECTORY.resolve("products-" + size + ".json");
+		if (Files.exists(file)) {
+			return file;
+		}
+		Files.createDirectories(DIRECTORY);
+		Path temp = Files.createTempFile(DIRECTORY, "products-", ".part");
+		Random random = new Random(size);
+		try (JsonGenerator json = new JsonFactory().createGenerator(temp.toFile(), JsonEncoding.UTF8)) {
+			json.writeStartArray();
+			for (int i = 0; i < size; i++) {
+				json.writeStartObject();
+				json.writeStringField("productID", productId(i));
+				json.writeStringField("name", name(random));
+				json.writeStringField("description", description(random));
+				json.writeStringField("price", price(random));
+				json.writeNumberField("stock", random.nextInt(500));
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+		}
+		Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+		return file;
+	}
+
+	/**
+	 * A CSV file with the header {@code id,name,description,price}. Some names contain
+	 * commas and quotes, so the tokenizer also has to handle quoted fields.
+	 */
+	public static synchronized Path csv(int size) throws IOException {
+		Path file = DIRECTORY.resolve("products-" + size + ".csv");
+		if (Files.exists(file)) {
+			return file;
+		}
+		Files.createDirectories(DIRECTORY);
+		Path temp = Files.createTempFile(DIRECTORY, "products-", ".part");
+		Random random = new Random(size);
+		try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			out.write("id,name,description,price\n");
+			for (int i = 0; i < size; i++) {
+				String name = name(random);
+				if (i % 10 == 0) {
+					name = "\"" + name + ", \"\"Deluxe\"\"\"";
+				}
+				out.write((i + 1) + "," + name + "," + description(random) + ","
+						+ String.format(Locale.ROOT, "%.2f", 1 + random.nextInt(100_000) / 100.0) + "\n");
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+		return file;
+	}
+
+	/**
+	 * Price strings in the format of the ERP file.
+	 */
+	public static String[] prices(int size) {
+		Random random = new Random(size);
+		String[] prices = new String[size];
+		for (int i = 0; i < size; i++) {
+			prices[i] = price(random);
+		}
+		return prices;
+	}
+
+	private static String productId(int i) {
+		return String.format(Locale.ROOT, "P-%08d", i);
+	}
+
+	private static String name(Random random) {
+		return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static String description(Random random) {
+		StringBuilder description = new StringBuilder();
+		int words = 5 + random.nextInt(15);
+		for (int i = 0; i < words; i++) {
+			description.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)].toLowerCase(Locale.ROOT));
+		}
+		return description.toString();
+	}
+
+	private static String price(Random random) {
+		return String.format(Locale.ROOT, "%.2f EUR", 1 + random.nextInt(100_000) / 100.0);
+	}
+}
@@ -0,0 +1,66 @@
+package de.fhaachen.si.web.shop.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Presents a file on disk as an upload, so the CSV import reads it as a stream like a real request.
+ */
+public class PathMultipartFile implements MultipartFile {
+
+	private final Path path;
+
+	public PathMultipartFile(Path path) {
+		this.path = path;
+	}
+
+	@Override
+	public String getName() {
+		return "file";
+	}
+
+	@Override
+	public String getOriginalFilename() {
+		return path.getFileName().toString();
+	}
+
+	@Override
+	public String getContentType() {
+		return "text/csv";
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return getSize() == 0;
+	}
+
+	@Override
+	public long getSize() {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	@Override
+	public byte[] getBytes() throws IOException {
+		return Files.readAllBytes(path);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return Files.newInputStream(path);
+	}
+
+	@Override
+	public void transferTo(File dest) throws IOException {
+		Files.copy(path, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
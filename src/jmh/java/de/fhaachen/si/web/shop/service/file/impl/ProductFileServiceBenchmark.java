@@ -0,0 +1,85 @@
+package de.fhaachen.si.web.shop.service.file.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.fhaachen.si.web.shop.benchmark.BenchmarkSupport;
+import de.fhaachen.si.web.shop.benchmark.GeneratedCatalog;
+
+/**
+ * Parsing cost of a catalog without the database: the ERP JSON file, its price strings
+ * and the admin CSV upload. Every operation processes the whole catalog.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductFileServiceBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private ProductFileService productFileService;
+
+	private Path jsonFile;
+
+	private Path csvFile;
+
+	private String[] prices;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BenchmarkSupport.muteStdout();
+		productFileService = new ProductFileService();
+		BenchmarkSupport.inject(productFileService, "chunkSize", 1000);
+		jsonFile = GeneratedCatalog.json(size);
+		csvFile = GeneratedCatalog.csv(size);
+		prices = GeneratedCatalog.prices(size);
+	}
+
+	@Benchmark
+	public void readJson(Blackhole blackhole) throws IOException {
+		productFileService.readProductsFromFile(jsonFile, blackhole::consume);
+	}
+
+	@Benchmark
+	public double parsePrices() {
+		double sum = 0;
+		for (String price : prices) {
+			sum += ProductFileService.parsePrice(price);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public void tokenizeCsv(Blackhole blackhole) throws IOException {
+		try (Reader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+			CsvTokenizer tokenizer = new CsvTokenizer(reader);
+			List<String> fields;
+			while ((fields = tokenizer.next()) != null) {
+				blackhole.consume(fields);
+			}
+		}
+	}
+}
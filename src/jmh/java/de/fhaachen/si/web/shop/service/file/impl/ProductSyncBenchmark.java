@@ -0,0 +1,97 @@
+package de.fhaachen.si.web.shop.service.file.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fhaachen.si.web.shop.benchmark.BenchmarkSupport;
+import de.fhaachen.si.web.shop.benchmark.EmbeddedDatabase;
+import de.fhaachen.si.web.shop.benchmark.GeneratedCatalog;
+import de.fhaachen.si.web.shop.service.StockCache;
+import de.fhaachen.si.web.shop.service.file.dto.ProductDTO;
+
+/**
+ * The database side of a product sync: chunked upserts followed by the delete of products
+ * missing from the file, against an embedded Postgres. The products are parsed once up
+ * front, see {@link ProductFileServiceBenchmark} for the parsing cost.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSyncBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	private ProductFileService productFileService;
+
+	private final List<List<ProductDTO>> chunks = new ArrayList<>();
+
+	private final Set<String> productIds = new HashSet<>();
+
+	@Setup(Level.Trial)
+	public void setUp(EmbeddedDatabase database) throws IOException {
+		BenchmarkSupport.muteStdout();
+		productFileService = new ProductFileService();
+		BenchmarkSupport.inject(productFileService, "chunkSize", 1000);
+		BenchmarkSupport.inject(productFileService, "productBulkRepository", database.getProductBulkRepository());
+		BenchmarkSupport.inject(productFileService, "stockCache", new StockCache());
+		productFileService.readProductsFromFile(GeneratedCatalog.json(size), chunk -> {
+			chunks.add(chunk);
+			chunk.forEach(product -> productIds.add(product.getProductID()));
+		});
+		sync();
+	}
+
+	/**
+	 * First sync into an empty table: every row is inserted.
+	 */
+	@Benchmark
+	public int syncIntoEmptyTable(EmptyTable emptyTable) {
+		return sync();
+	}
+
+	/**
+	 * Sync of a file that matches the table: every row is compared and none is written.
+	 */
+	@Benchmark
+	public int resyncUnchanged() {
+		return sync();
+	}
+
+	private int sync() {
+		int written = 0;
+		for (List<ProductDTO> chunk : chunks) {
+			written += productFileService.insertOrUpdateProducts(chunk);
+		}
+		return written + productFileService.deleteMissingProducts(productIds);
+	}
+
+	@State(Scope.Thread)
+	public static class EmptyTable {
+
+		@Setup(Level.Invocation)
+		public void truncate(EmbeddedDatabase database) {
+			database.truncateProducts();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package de.fhaachen.si.web.shop.service.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.fhaachen.si.web.shop.benchmark.BenchmarkSupport;
+import de.fhaachen.si.web.shop.benchmark.EmbeddedDatabase;
+import de.fhaachen.si.web.shop.benchmark.GeneratedCatalog;
+import de.fhaachen.si.web.shop.benchmark.PathMultipartFile;
+import de.fhaachen.si.web.shop.dto.ImportReportDTO;
+
+/**
+ * The admin CSV upload end to end: tokenizing, the worker pool and the upserts by id
+ * against an embedded Postgres.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvImportBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int size;
+
+	@Param({ "4" })
+	public int workers;
+
+	private ProductService productService;
+
+	private PathMultipartFile file;
+
+	@Setup(Level.Trial)
+	public void setUp(EmbeddedDatabase database) throws IOException {
+		BenchmarkSupport.muteStdout();
+		productService = new ProductService();
+		BenchmarkSupport.inject(productService, "productBulkRepository", database.getProductBulkRepository());
+		BenchmarkSupport.inject(productService, "importWorkers", workers);
+		BenchmarkSupport.inject(productService, "importBatchSize", 500);
+		productService.init();
+		file = new PathMultipartFile(GeneratedCatalog.csv(size));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		productService.shutdown();
+	}
+
+	@Benchmark
+	public ImportReportDTO importCsv() throws IOException {
+		return productService.importProductsFromFile(file);
+	}
+}
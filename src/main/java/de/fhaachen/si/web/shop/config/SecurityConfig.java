@@ -20,6 +20,7 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import de.fhaachen.si.web.shop.security.JwtAuthFilter;
+import jakarta.servlet.DispatcherType;
 import de.fhaachen.si.web.shop.service.CustomUserDetailsService;
 
 @Configuration
@@ -40,15 +41,20 @@ public class SecurityConfig {
                 .cors(httpSecurityCorsConfigurer -> httpSecurityCorsConfigurer
                         .configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
+                        // async dispatches resume requests that were already authorized
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/auth/**").permitAll()
-                        .requestMatchers("/products/**").permitAll()
-                        .requestMatchers("/customers/**").authenticated()
-                        .requestMatchers("/orders/**").authenticated()
-                        .requestMatchers("/import/**").authenticated()
+                        // the first matching rule wins, so admin paths go before their parents
                         .requestMatchers("/products/admin/**").hasRole("ADMIN")
                         .requestMatchers("/customers/admin/**").hasRole("ADMIN")
                         .requestMatchers("/orders/admin/**").hasRole("ADMIN")
                         .requestMatchers("/import/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/erp/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/products/**").permitAll()
+                        .requestMatchers("/customers/**").authenticated()
+                        .requestMatchers("/orders/**").authenticated()
+                        .requestMatchers("/import/**").authenticated()
+                        .requestMatchers("/erp/**").authenticated()
                         .anyRequest().authenticated())
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
                 .build();
@@ -0,0 +1,67 @@
+package de.fhaachen.si.web.shop.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.fhaachen.si.web.shop.grpc.CircuitBreakers;
+import de.fhaachen.si.web.shop.grpc.GrpcChannelFactory;
+import de.fhaachen.si.web.shop.service.StockCache;
+import de.fhaachen.si.web.shop.service.catalog.ErpProductCatalog;
+import de.fhaachen.si.web.shop.service.impl.OrderOutboxDispatcher;
+
+@RestController
+@RequestMapping("/erp/admin")
+public class ErpAdminController {
+
+	// only present in the erp profile
+	@Autowired(required = false)
+	protected ErpProductCatalog productCatalog;
+
+	@Autowired(required = false)
+	protected OrderOutboxDispatcher outboxDispatcher;
+
+	@Autowired
+	protected StockCache stockCache;
+
+	@Autowired
+	protected GrpcChannelFactory channelFactory;
+
+	@Autowired
+	protected CircuitBreakers circuitBreakers;
+
+	@GetMapping("/catalog/stats")
+	public ResponseEntity<Map<String, Object>> getCatalogStats() {
+		if (productCatalog == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(productCatalog.getStats());
+	}
+
+	@GetMapping("/stock/stats")
+	public ResponseEntity<Map<String, Object>> getStockCacheStats() {
+		return ResponseEntity.ok(stockCache.getStats());
+	}
+
+	@GetMapping("/grpc/stats")
+	public ResponseEntity<Map<String, Object>> getGrpcStats() {
+		return ResponseEntity.ok(channelFactory.getHedgingStats());
+	}
+
+	@GetMapping("/circuit-breakers")
+	public ResponseEntity<Map<String, Object>> getCircuitBreakers() {
+		return ResponseEntity.ok(circuitBreakers.getStats());
+	}
+
+	@GetMapping("/outbox")
+	public ResponseEntity<Map<String, Object>> getOutboxStats() {
+		if (outboxDispatcher == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(outboxDispatcher.getStats());
+	}
+}
@@ -10,13 +10,21 @@ import de.fhaachen.si.web.shop.service.ProductSyncScheduler;
 import de.fhaachen.si.web.shop.service.impl.ProductService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import de.fhaachen.si.web.shop.dto.ProductSyncDTO;
+import de.fhaachen.si.web.shop.service.job.ImportJob;
+import de.fhaachen.si.web.shop.service.job.ImportJobService;
 
 @RestController
 @RequestMapping("/import/admin")
@@ -28,6 +36,13 @@ public class ImportController {
 	@Autowired
 	private ProductSyncScheduler scheduler;
 
+	@Autowired
+	private ImportJobService importJobService;
+
+	// the CSV import only exists in the local profile
+	@Autowired(required = false)
+	private ProductService productService;
+
 	private ScheduledFuture<?> scheduled;
 
 	@PostMapping("/start")
@@ -38,7 +53,7 @@ public class ImportController {
 			}
 			scheduler.setLastPeriod(dto.getPeriod());
 			scheduled = taskScheduler.schedule(
-					() -> scheduler.syncProducts(dto.getEndpoint(), dto.getUsername(), dto.getPassword()),
+					() -> importJobService.submit(dto, "scheduled"),
 					new CronTrigger(dto.getPeriod()));
 			return ResponseEntity.ok("Scheduled with period: " + dto.getPeriod());
 		} catch (Exception e) {
@@ -59,13 +74,51 @@ public class ImportController {
 		}
 	}
 
+	/**
+	 * Starts a sync in the background and returns its job ID right away.
+	 */
 	@PostMapping("/run-now")
-	public ResponseEntity<String> runNow(@RequestBody ProductSyncDTO dto) {
+	public ResponseEntity<Map<String, Object>> runNow(@RequestBody ProductSyncDTO dto) {
+		ImportJob job = importJobService.submit(dto, "manual");
+		Map<String, Object> body = new HashMap<>();
+		body.put("jobId", job.getId());
+		return ResponseEntity.accepted().body(body);
+	}
+
+	@GetMapping("/jobs/{id}")
+	public ResponseEntity<Map<String, Object>> getJob(@PathVariable String id) {
+		ImportJob job = importJobService.getJob(id);
+		if (job == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(job.toMap());
+	}
+
+	@GetMapping(path = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> streamJob(@PathVariable String id) {
+		if (importJobService.getJob(id) == null) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(importJobService.subscribe(id));
+	}
+
+	/**
+	 * Progress of every job, scheduled ones included, for as long as the client stays connected.
+	 */
+	@GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamJobs() {
+		return importJobService.subscribe(null);
+	}
+
+	@PostMapping("/csv")
+	public ResponseEntity<?> importCsv(@RequestParam("file") MultipartFile file) {
+		if (productService == null) {
+			return ResponseEntity.badRequest().body("CSV import is not available in this profile");
+		}
 		try {
-			scheduler.syncProducts(dto.getEndpoint(), dto.getUsername(), dto.getPassword());
-			return ResponseEntity.ok("Executed");
+			return ResponseEntity.ok(productService.importProductsFromFile(file));
 		} catch (Exception e) {
-			return ResponseEntity.badRequest().body("Run failed: " + e.getMessage());
+			return ResponseEntity.badRequest().body("Import failed: " + e.getMessage());
 		}
 	}
 
@@ -77,6 +130,8 @@ public class ImportController {
             body.put("running", hasSchedule);
             body.put("lastImport", scheduler.getLastImport());
             body.put("period", scheduler.getLastPeriod());
+            body.put("syncInProgress", scheduler.isRunning());
+            body.put("jobs", importJobService.getStats());
             return ResponseEntity.ok(body);
         } catch (Exception e) {
             Map<String, Object> err = new HashMap<>();
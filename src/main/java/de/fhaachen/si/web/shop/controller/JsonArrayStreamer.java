@@ -0,0 +1,36 @@
+package de.fhaachen.si.web.shop.controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes a JSON array element by element while the source produces them,
+ * so the response is never built up in memory.
+ */
+final class JsonArrayStreamer {
+
+	private JsonArrayStreamer() {
+	}
+
+	static <T> StreamingResponseBody stream(ObjectMapper objectMapper, Consumer<Consumer<T>> source) {
+		return out -> {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+				generator.writeStartArray();
+				source.accept(element -> {
+					try {
+						generator.writeObject(element);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				generator.writeEndArray();
+			}
+		};
+	}
+}
@@ -1,9 +1,15 @@
 package de.fhaachen.si.web.shop.controller;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -12,10 +18,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import de.fhaachen.si.web.shop.dto.OrderDTO;
+import de.fhaachen.si.web.shop.dto.OrderPageDTO;
 import de.fhaachen.si.web.shop.entity.OrderStatus;
 import de.fhaachen.si.web.shop.service.CustomerService;
+import de.fhaachen.si.web.shop.service.OrderBatchService;
 import de.fhaachen.si.web.shop.service.api.IOrderService;
 
 @RestController
@@ -27,27 +38,105 @@ public class OrderController {
 	@Autowired
 	protected CustomerService customerService;
 	
+	@Autowired
+	protected ObjectMapper objectMapper;
+
+	@Autowired
+	protected OrderBatchService orderBatchService;
+
+	@Value("${app.orders.page-size.default:20}")
+	private int defaultPageSize;
+
+	@Value("${app.orders.page-size.max:100}")
+	private int maxPageSize;
+	
 	@PostMapping("/customer/{customerId}")
-    public ResponseEntity<OrderDTO> createOrder(@PathVariable Long customerId, @RequestBody OrderDTO orderDTO) {
-        OrderDTO order = orderService.createOrderFromDTO(orderDTO);
-        return ResponseEntity.ok(order);
+    public CompletableFuture<ResponseEntity<?>> createOrder(@PathVariable Long customerId, @RequestBody OrderDTO orderDTO) {
+        CompletableFuture<OrderDTO> order;
+        try {
+            order = orderService.createOrderFromDTOAsync(orderDTO);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+        return order.<ResponseEntity<?>>thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Progress of an order accepted into the outbox (ERP profile); {@code reference} is the id
+     * returned when the order was placed.
+     */
+    @GetMapping("/outbox/{reference}")
+    public ResponseEntity<Map<String, Object>> getOutboxStatus(@PathVariable String reference,
+            Authentication authentication) {
+        return orderService.findOutboxStatus(reference, authentication.getName())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Creates many orders at once. Orders carrying an {@code idempotencyKey} that the same user
+     * sent before are not created again; the result points to the existing order instead.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> createOrders(@RequestBody List<OrderDTO> orders, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(orderBatchService.submit(authentication.getName(), orders));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<List<OrderDTO>> getCustomerOrders(@PathVariable Long customerId) {
-        List<OrderDTO> orders = orderService.getOrdersForCustomer(customerId);
-        return ResponseEntity.ok(orders);
+    public CompletableFuture<ResponseEntity<?>> getCustomerOrders(@PathVariable Long customerId,
+            @RequestParam(required = false) Integer pageSize, @RequestParam(required = false) String pageToken) {
+        CompletableFuture<OrderPageDTO> page;
+        try {
+            page = orderService.getOrdersForCustomerAsync(customerId, pageSize(pageSize), pageToken);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+        return page.<ResponseEntity<?>>thenApply(ResponseEntity::ok).exceptionally(OrderController::badRequest);
     }
 
     @GetMapping("/admin")
-    public ResponseEntity<List<OrderDTO>> getAllOrders() {
-        List<OrderDTO> orders = orderService.getAllOrders();
-        return ResponseEntity.ok(orders);
+    public CompletableFuture<ResponseEntity<?>> getOrders(@RequestParam(required = false) String status,
+            @RequestParam(required = false) Long customerId, @RequestParam(required = false) Integer pageSize,
+            @RequestParam(required = false) String pageToken) {
+        CompletableFuture<OrderPageDTO> page;
+        try {
+            OrderStatus orderStatus = status == null || status.isBlank() ? null : OrderStatus.valueOf(status.toUpperCase());
+            page = orderService.getOrdersAsync(orderStatus, customerId, pageSize(pageSize), pageToken);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+        return page.<ResponseEntity<?>>thenApply(ResponseEntity::ok).exceptionally(OrderController::badRequest);
+    }
+
+    @GetMapping("/admin/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllOrders() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(JsonArrayStreamer.stream(objectMapper, orderService::forEachOrder));
+    }
+
+    /**
+     * Turns an {@link IllegalArgumentException} from an asynchronous call (e.g. a page token
+     * the ERP does not know) into 400; everything else is rethrown.
+     */
+    private static ResponseEntity<?> badRequest(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IllegalArgumentException) {
+            return ResponseEntity.badRequest().body(cause.getMessage());
+        }
+        throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+    }
+
+    private int pageSize(Integer requested) {
+        return requested == null ? defaultPageSize : Math.max(1, Math.min(requested, maxPageSize));
     }
 
     @PutMapping("/admin/{orderId}/status")
-    public ResponseEntity<OrderDTO> updateStatus(@PathVariable Long orderId, @RequestParam String status) {
-        OrderDTO updated = orderService.updateOrderStatus(orderId, OrderStatus.valueOf(status));
-        return ResponseEntity.ok(updated);
+    public CompletableFuture<ResponseEntity<OrderDTO>> updateStatus(@PathVariable Long orderId, @RequestParam String status) {
+        return orderService.updateOrderStatusAsync(orderId, OrderStatus.valueOf(status)).thenApply(ResponseEntity::ok);
     }
 }
@@ -1,8 +1,11 @@
 package de.fhaachen.si.web.shop.controller;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,7 +14,11 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import de.fhaachen.si.web.shop.dto.ProductDTO;
 import de.fhaachen.si.web.shop.service.api.IProductService;
@@ -23,14 +30,27 @@ public class ProductController {
     @Autowired
     protected IProductService productService;
 
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    // RFC 7234 warning for responses served from an outdated copy while the ERP is unavailable
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
     @GetMapping
-    public ResponseEntity<List<ProductDTO>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public CompletableFuture<ResponseEntity<List<ProductDTO>>> getAllProducts() {
+        return productService.getAllProductsAsync().thenApply(products -> ok(products, productService.isCatalogStale()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllProducts() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(JsonArrayStreamer.stream(objectMapper, productService::forEachProduct));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDTO> getProductById(@PathVariable String id) {
-        return ResponseEntity.ok(productService.getProductById(id));
+    public CompletableFuture<ResponseEntity<ProductDTO>> getProductById(@PathVariable String id) {
+        return productService.getProductByIdAsync(id).thenApply(product -> ok(product, productService.isCatalogStale()));
     }
 
     @PostMapping("/admin")
@@ -51,24 +71,41 @@ public class ProductController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/stock")
+    public CompletableFuture<ResponseEntity<?>> getProductStocks(@RequestParam List<String> ids) {
+        CompletableFuture<Map<String, Integer>> stocks;
+        try {
+            stocks = productService.getStockForProductsAsync(ids);
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Invalid product ID: " + e.getMessage()));
+        }
+        return stocks.<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> ResponseEntity.internalServerError().body("Failed to fetch stock for IDs: " + ids));
+    }
+
     @GetMapping("/stock/{id}")
-    public ResponseEntity<?> getProductStock(@PathVariable String id) {
-        ProductDTO product = productService.getProductById(id);
-		if (product == null) {
-			return ResponseEntity.notFound().build();
-		}
+    public CompletableFuture<ResponseEntity<?>> getProductStock(@PathVariable String id) {
+        return productService.getProductByIdAsync(id).thenCompose(product -> {
+            if (product == null) {
+                return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+            }
 
-        String externalId = product.getProductID();
+            String externalId = product.getProductID();
 
-        if (externalId == null || externalId.isEmpty()) {
-            return ResponseEntity.badRequest().body("Product has no valid external ID.");
-        }
+            if (externalId == null || externalId.isEmpty()) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Product has no valid external ID."));
+            }
 
-        try {
-            int stock = productService.getStockFromGrpc(externalId);
-            return ResponseEntity.ok(stock);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("Failed to fetch stock for ID: " + externalId);
+            return productService.getStockFromGrpcAsync(externalId)
+                    .<ResponseEntity<?>>thenApply(stock -> ok(stock, productService.isStockStale(externalId)))
+                    .exceptionally(e -> ResponseEntity.internalServerError().body("Failed to fetch stock for ID: " + externalId));
+        });
+    }
+
+    private static <T> ResponseEntity<T> ok(T body, boolean stale) {
+        if (!stale) {
+            return ResponseEntity.ok(body);
         }
+        return ResponseEntity.ok().header("Warning", STALE_WARNING).body(body);
     }
 }
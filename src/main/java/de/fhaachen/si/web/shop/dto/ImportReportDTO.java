@@ -0,0 +1,89 @@
+package de.fhaachen.si.web.shop.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a file import: row counts and the rows that could not be imported.
+ */
+public class ImportReportDTO {
+	private long totalRows;
+
+	private long imported;
+
+	private long failed;
+
+	private long durationMs;
+
+	private List<LineError> errors = new ArrayList<>();
+
+	public long getTotalRows() {
+		return totalRows;
+	}
+
+	public void setTotalRows(long totalRows) {
+		this.totalRows = totalRows;
+	}
+
+	public long getImported() {
+		return imported;
+	}
+
+	public void setImported(long imported) {
+		this.imported = imported;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+
+	public long getDurationMs() {
+		return durationMs;
+	}
+
+	public void setDurationMs(long durationMs) {
+		this.durationMs = durationMs;
+	}
+
+	public List<LineError> getErrors() {
+		return errors;
+	}
+
+	public void setErrors(List<LineError> errors) {
+		this.errors = errors;
+	}
+
+	public static class LineError {
+		private int line;
+
+		private String message;
+
+		public LineError() {
+		}
+
+		public LineError(int line, String message) {
+			this.line = line;
+			this.message = message;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public void setLine(int line) {
+			this.line = line;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public void setMessage(String message) {
+			this.message = message;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package de.fhaachen.si.web.shop.dto;
+
+/**
+ * Outcome of one order of a {@code POST /orders/batch} request.
+ */
+public class OrderBatchResultDTO {
+
+	public static final String CREATED = "CREATED";
+	// the key was used before; orderId is the order created back then
+	public static final String DUPLICATE = "DUPLICATE";
+	// another request with the same key is still being processed
+	public static final String IN_PROGRESS = "IN_PROGRESS";
+	public static final String FAILED = "FAILED";
+	// the order may or may not have been created; retry with the same key to find out
+	public static final String UNKNOWN = "UNKNOWN";
+
+	private String idempotencyKey;
+	private String status;
+	private String orderId;
+	private OrderDTO order;
+	private String error;
+
+	public static OrderBatchResultDTO created(OrderDTO order) {
+		OrderBatchResultDTO result = new OrderBatchResultDTO();
+		result.status = CREATED;
+		result.order = order;
+		result.orderId = order.getId();
+		return result;
+	}
+
+	public static OrderBatchResultDTO failed(String error) {
+		OrderBatchResultDTO result = new OrderBatchResultDTO();
+		result.status = FAILED;
+		result.error = error;
+		return result;
+	}
+
+	public static OrderBatchResultDTO unknown(String error) {
+		OrderBatchResultDTO result = new OrderBatchResultDTO();
+		result.status = UNKNOWN;
+		result.error = error;
+		return result;
+	}
+
+	public static OrderBatchResultDTO duplicate(String orderId) {
+		OrderBatchResultDTO result = new OrderBatchResultDTO();
+		result.status = orderId != null ? DUPLICATE : IN_PROGRESS;
+		result.orderId = orderId;
+		return result;
+	}
+
+	public String getIdempotencyKey() {
+		return idempotencyKey;
+	}
+
+	public void setIdempotencyKey(String idempotencyKey) {
+		this.idempotencyKey = idempotencyKey;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getOrderId() {
+		return orderId;
+	}
+
+	public void setOrderId(String orderId) {
+		this.orderId = orderId;
+	}
+
+	public OrderDTO getOrder() {
+		return order;
+	}
+
+	public void setOrder(OrderDTO order) {
+		this.order = order;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+}
@@ -12,6 +12,7 @@ public class OrderDTO {
 	private Double totalAmount;
 	private List<OrderItemDTO> items;
 	private String customerUUID;
+	private String idempotencyKey;
 
 	public String getId() {
 		return id;
@@ -68,4 +69,15 @@ public class OrderDTO {
 	public void setCustomerUUID(String customerUUID) {
 		this.customerUUID = customerUUID;
 	}
+
+	/**
+	 * Client-chosen key for {@code POST /orders/batch}; an order is created at most once per key.
+	 */
+	public String getIdempotencyKey() {
+		return idempotencyKey;
+	}
+
+	public void setIdempotencyKey(String idempotencyKey) {
+		this.idempotencyKey = idempotencyKey;
+	}
 }
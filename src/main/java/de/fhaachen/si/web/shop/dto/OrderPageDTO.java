@@ -0,0 +1,36 @@
+package de.fhaachen.si.web.shop.dto;
+
+import java.util.List;
+
+public class OrderPageDTO {
+
+	private List<OrderDTO> orders;
+	private String nextPageToken;
+
+	public OrderPageDTO() {
+	}
+
+	public OrderPageDTO(List<OrderDTO> orders, String nextPageToken) {
+		this.orders = orders;
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<OrderDTO> getOrders() {
+		return orders;
+	}
+
+	public void setOrders(List<OrderDTO> orders) {
+		this.orders = orders;
+	}
+
+	/**
+	 * {@code null} on the last page.
+	 */
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public void setNextPageToken(String nextPageToken) {
+		this.nextPageToken = nextPageToken;
+	}
+}
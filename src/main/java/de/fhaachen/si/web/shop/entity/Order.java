@@ -1,21 +1,29 @@
 package de.fhaachen.si.web.shop.entity;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "Orders")
+// the admin listing pages by (created_at, id), optionally filtered by status or customer
+@Table(name = "Orders", indexes = {
+		@Index(name = "idx_orders_created_at_id", columnList = "created_at, id"),
+		@Index(name = "idx_orders_status_created_at_id", columnList = "status, created_at, id"),
+		@Index(name = "idx_orders_customer_created_at_id", columnList = "customer_id, created_at, id") })
 public class Order {
 	@Id
 	@GeneratedValue(strategy = GenerationType.AUTO)
@@ -32,6 +40,16 @@ public class Order {
     private OrderStatus status = OrderStatus.PENDING;
     
     private Double totalAmount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
     
     public void calculateTotal() {
         this.totalAmount = orderItems.stream()
@@ -78,4 +96,12 @@ public class Order {
 	public void setTotalAmount(Double totalAmount) {
 		this.totalAmount = totalAmount;
 	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
 }
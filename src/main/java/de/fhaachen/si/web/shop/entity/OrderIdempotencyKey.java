@@ -0,0 +1,96 @@
+package de.fhaachen.si.web.shop.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Idempotency key of a batch-submitted order. Keys belong to the user who sent them, so two
+ * users can use the same key. A row is claimed before the order is created and gets the order
+ * id once it exists. Read and written by {@code OrderIdempotencyRepository}.
+ */
+@Entity
+@IdClass(OrderIdempotencyKey.Key.class)
+@Table(name = "order_idempotency_keys", indexes = @Index(name = "idx_order_idempotency_keys_claimed_at", columnList = "claimed_at"))
+public class OrderIdempotencyKey {
+
+	@Id
+	@Column(name = "owner", nullable = false)
+	private String owner;
+
+	@Id
+	@Column(name = "idempotency_key", length = 128)
+	private String idempotencyKey;
+
+	@Column(name = "order_id")
+	private String orderId;
+
+	@Column(name = "claimed_at", nullable = false)
+	private LocalDateTime claimedAt;
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public String getIdempotencyKey() {
+		return idempotencyKey;
+	}
+
+	public void setIdempotencyKey(String idempotencyKey) {
+		this.idempotencyKey = idempotencyKey;
+	}
+
+	public String getOrderId() {
+		return orderId;
+	}
+
+	public void setOrderId(String orderId) {
+		this.orderId = orderId;
+	}
+
+	public LocalDateTime getClaimedAt() {
+		return claimedAt;
+	}
+
+	public void setClaimedAt(LocalDateTime claimedAt) {
+		this.claimedAt = claimedAt;
+	}
+
+	public static class Key implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private String owner;
+		private String idempotencyKey;
+
+		public Key() {
+		}
+
+		public Key(String owner, String idempotencyKey) {
+			this.owner = owner;
+			this.idempotencyKey = idempotencyKey;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key other && Objects.equals(owner, other.owner)
+					&& Objects.equals(idempotencyKey, other.idempotencyKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(owner, idempotencyKey);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package de.fhaachen.si.web.shop.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * An accepted order waiting to be sent to the ERP. Written and read by
+ * {@code OrderOutboxRepository}; the mapping only defines the table.
+ */
+@Entity
+@Table(name = "order_outbox", indexes = @Index(name = "idx_order_outbox_status_next_attempt", columnList = "status, next_attempt_at"))
+public class OrderOutboxEntry {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_seq")
+	@SequenceGenerator(name = "order_outbox_seq", sequenceName = "order_outbox_seq", allocationSize = 1)
+	private Long id;
+
+	// the OrderDTO as JSON
+	@Column(nullable = false, columnDefinition = "text")
+	private String payload;
+
+	// whose order it is, so its progress can be shown to that customer only
+	@Column(name = "customer_uuid", length = 36)
+	private String customerUUID;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 16)
+	private OutboxStatus status;
+
+	private int attempts;
+
+	// claims whose dispatcher never reported back; bounds an entry that keeps crashing it
+	@Column(name = "lease_expiries", nullable = false, columnDefinition = "integer default 0")
+	private int leaseExpiries;
+
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt;
+
+	// a SENDING entry whose lease ran out is picked up again
+	@Column(name = "locked_until")
+	private LocalDateTime lockedUntil;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	@Column(name = "erp_order_id")
+	private String erpOrderId;
+
+	@Column(name = "last_error", length = 1000)
+	private String lastError;
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+
+	public String getCustomerUUID() {
+		return customerUUID;
+	}
+
+	public void setCustomerUUID(String customerUUID) {
+		this.customerUUID = customerUUID;
+	}
+
+	public OutboxStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(OutboxStatus status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public int getLeaseExpiries() {
+		return leaseExpiries;
+	}
+
+	public void setLeaseExpiries(int leaseExpiries) {
+		this.leaseExpiries = leaseExpiries;
+	}
+
+	public LocalDateTime getNextAttemptAt() {
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public LocalDateTime getLockedUntil() {
+		return lockedUntil;
+	}
+
+	public void setLockedUntil(LocalDateTime lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public String getErpOrderId() {
+		return erpOrderId;
+	}
+
+	public void setErpOrderId(String erpOrderId) {
+		this.erpOrderId = erpOrderId;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+}
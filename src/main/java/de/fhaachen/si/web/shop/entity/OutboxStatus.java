@@ -0,0 +1,8 @@
+package de.fhaachen.si.web.shop.entity;
+
+public enum OutboxStatus {
+	PENDING,
+	SENDING,
+	SENT,
+	FAILED
+}
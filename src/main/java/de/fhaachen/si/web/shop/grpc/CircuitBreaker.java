@@ -0,0 +1,138 @@
+package de.fhaachen.si.web.shop.grpc;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import io.grpc.Status;
+
+/**
+ * Consecutive-failure circuit breaker for one ERP service.
+ * <p>
+ * After {@code failureThreshold} failures in a row the breaker opens and calls fail fast with
+ * {@link CircuitOpenException}. Once {@code openDurationMs} has passed a single probe call is let
+ * through (half-open); its outcome closes the breaker again or re-opens it.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	// errors that say something about the health of the ERP, as opposed to the request itself
+	private static final Set<Status.Code> FAILURE_CODES = Set.of(Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED,
+			Status.Code.RESOURCE_EXHAUSTED, Status.Code.INTERNAL, Status.Code.UNKNOWN);
+
+	private final String name;
+	private final int failureThreshold;
+	private final long openDurationMs;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean probeInFlight;
+	private long rejectedCalls;
+
+	public CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+		this.name = name;
+		this.failureThreshold = failureThreshold;
+		this.openDurationMs = openDurationMs;
+	}
+
+	public <T> T call(Supplier<T> call) {
+		acquire();
+		try {
+			T result = call.get();
+			onSuccess();
+			return result;
+		} catch (RuntimeException e) {
+			onError(e);
+			throw e;
+		}
+	}
+
+	public <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call) {
+		try {
+			acquire();
+		} catch (CircuitOpenException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		CompletableFuture<T> future;
+		try {
+			future = call.get();
+		} catch (RuntimeException e) {
+			onError(e);
+			return CompletableFuture.failedFuture(e);
+		}
+		return future.whenComplete((result, e) -> {
+			if (e != null) {
+				onError(e);
+			} else {
+				onSuccess();
+			}
+		});
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("state", state);
+		stats.put("consecutiveFailures", consecutiveFailures);
+		stats.put("openedAt", openedAt == 0 ? null : Instant.ofEpochMilli(openedAt).toString());
+		stats.put("rejectedCalls", rejectedCalls);
+		return stats;
+	}
+
+	private synchronized void acquire() {
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+			state = State.HALF_OPEN;
+			probeInFlight = false;
+		}
+		if (state == State.CLOSED) {
+			return;
+		}
+		if (state == State.HALF_OPEN && !probeInFlight) {
+			probeInFlight = true;
+			return;
+		}
+		rejectedCalls++;
+		throw new CircuitOpenException(name);
+	}
+
+	private synchronized void onSuccess() {
+		consecutiveFailures = 0;
+		probeInFlight = false;
+		if (state != State.CLOSED) {
+			System.out.println("[gRPC] Circuit breaker '" + name + "' closed");
+			state = State.CLOSED;
+		}
+	}
+
+	private void onError(Throwable e) {
+		if (FAILURE_CODES.contains(Status.fromThrowable(e).getCode())) {
+			onFailure();
+		} else {
+			// the ERP answered, so it is healthy even though the call failed
+			onSuccess();
+		}
+	}
+
+	private synchronized void onFailure() {
+		consecutiveFailures++;
+		probeInFlight = false;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			if (state != State.OPEN) {
+				System.err.println("[gRPC] Circuit breaker '" + name + "' opened after " + consecutiveFailures
+						+ " consecutive failures");
+			}
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package de.fhaachen.si.web.shop.grpc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * One circuit breaker per ERP gRPC service, shared by the clients.
+ */
+@Component
+public class CircuitBreakers {
+
+	@Value("${app.erp.circuit-breaker.failure-threshold:5}")
+	private int failureThreshold;
+
+	@Value("${app.erp.circuit-breaker.open-duration-ms:10000}")
+	private long openDurationMs;
+
+	private CircuitBreaker stock;
+	private CircuitBreaker product;
+	private CircuitBreaker order;
+
+	@PostConstruct
+	public void init() {
+		stock = new CircuitBreaker("stock", failureThreshold, openDurationMs);
+		product = new CircuitBreaker("product", failureThreshold, openDurationMs);
+		order = new CircuitBreaker("order", failureThreshold, openDurationMs);
+	}
+
+	public CircuitBreaker stock() {
+		return stock;
+	}
+
+	public CircuitBreaker product() {
+		return product;
+	}
+
+	public CircuitBreaker order() {
+		return order;
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("stock", stock.getStats());
+		stats.put("product", product.getStats());
+		stats.put("order", order.getStats());
+		return stats;
+	}
+}
@@ -0,0 +1,13 @@
+package de.fhaachen.si.web.shop.grpc;
+
+/**
+ * Thrown instead of calling the ERP while the circuit breaker for a service is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException(String service) {
+		super("Circuit breaker for ERP service '" + service + "' is open");
+	}
+}
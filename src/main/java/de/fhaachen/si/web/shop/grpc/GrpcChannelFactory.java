@@ -0,0 +1,148 @@
+package de.fhaachen.si.web.shop.grpc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServiceDescriptor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Owns the single channel to the ERP that all gRPC clients share.
+ * The channel connects lazily and is shut down together with the application context.
+ * Per-method deadlines and hedging policies are applied through the channel's service config.
+ */
+@Component
+public class GrpcChannelFactory {
+
+	@Autowired
+	protected Environment environment;
+
+	@Value("${app.erp.grpc.target:host.docker.internal:9090}")
+	private String target;
+
+	@Value("${app.erp.grpc.keepalive-time-ms:300000}")
+	private long keepAliveTimeMs;
+
+	@Value("${app.erp.grpc.keepalive-timeout-ms:20000}")
+	private long keepAliveTimeoutMs;
+
+	@Value("${app.erp.grpc.idle-timeout-ms:1800000}")
+	private long idleTimeoutMs;
+
+	@Value("${app.erp.grpc.max-inbound-message-size:16777216}")
+	private int maxInboundMessageSize;
+
+	@Value("${app.erp.grpc.executor-threads:8}")
+	private int executorThreads;
+
+	@Value("${app.erp.grpc.shutdown-timeout-ms:5000}")
+	private long shutdownTimeoutMs;
+
+	@Value("${app.erp.grpc.deadline-ms.default:5000}")
+	private long defaultDeadlineMs;
+
+	@Value("${app.erp.grpc.hedging.methods:Stock.GetStock,Stock.GetStockBatch,Product.GetProductById,Order.GetOrdersByCustomer}")
+	private String[] hedgedMethods;
+
+	@Value("${app.erp.grpc.hedging.max-attempts:2}")
+	private int hedgingMaxAttempts;
+
+	@Value("${app.erp.grpc.hedging.delay-ms:100}")
+	private long hedgingDelayMs;
+
+	private ExecutorService executor;
+
+	private ManagedChannel managedChannel;
+
+	private Channel channel;
+
+	private final HedgingMetrics hedgingMetrics = new HedgingMetrics();
+
+	@PostConstruct
+	public void init() {
+		executor = Executors.newFixedThreadPool(executorThreads,
+				Thread.ofPlatform().name("grpc-erp-", 0).daemon(true).factory());
+		managedChannel = ManagedChannelBuilder.forTarget(target)
+				.usePlaintext()
+				.keepAliveTime(keepAliveTimeMs, TimeUnit.MILLISECONDS)
+				.keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS)
+				.idleTimeout(idleTimeoutMs, TimeUnit.MILLISECONDS)
+				.maxInboundMessageSize(maxInboundMessageSize)
+				.executor(executor)
+				.defaultServiceConfig(buildServiceConfig())
+				.enableRetry()
+				.build();
+		channel = ClientInterceptors.intercept(managedChannel, hedgingMetrics);
+		System.out.println("[gRPC] Channel to " + target + " configured.");
+	}
+
+	public Channel getChannel() {
+		return channel;
+	}
+
+	public Map<String, Object> getHedgingStats() {
+		return hedgingMetrics.getStats();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		managedChannel.shutdown();
+		if (!managedChannel.awaitTermination(shutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+			managedChannel.shutdownNow();
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * One method config per ERP method: its deadline comes from
+	 * {@code app.erp.grpc.deadline-ms.<Service>.<Method>} (or the default), and the
+	 * idempotent reads listed in {@code app.erp.grpc.hedging.methods} get a hedging policy.
+	 */
+	private Map<String, Object> buildServiceConfig() {
+		Set<String> hedged = Set.of(hedgedMethods);
+		List<Map<String, Object>> methodConfigs = new ArrayList<>();
+		for (ServiceDescriptor service : List.of(StockGrpc.getServiceDescriptor(), ProductGrpc.getServiceDescriptor(),
+				OrderGrpc.getServiceDescriptor())) {
+			String serviceName = service.getName();
+			String simpleName = serviceName.substring(serviceName.lastIndexOf('.') + 1);
+			for (MethodDescriptor<?, ?> method : service.getMethods()) {
+				String key = simpleName + "." + method.getBareMethodName();
+				long deadlineMs = environment.getProperty("app.erp.grpc.deadline-ms." + key, Long.class, defaultDeadlineMs);
+
+				Map<String, Object> methodConfig = new LinkedHashMap<>();
+				methodConfig.put("name", List.of(Map.of("service", serviceName, "method", method.getBareMethodName())));
+				methodConfig.put("timeout", toDuration(deadlineMs));
+				if (hedged.contains(key)) {
+					methodConfig.put("hedgingPolicy", Map.of(
+							"maxAttempts", (double) hedgingMaxAttempts,
+							"hedgingDelay", toDuration(hedgingDelayMs),
+							"nonFatalStatusCodes", List.of("UNAVAILABLE")));
+				}
+				methodConfigs.add(methodConfig);
+			}
+		}
+		return Map.of("methodConfig", methodConfigs);
+	}
+
+	private static String toDuration(long millis) {
+		return String.format(Locale.ROOT, "%.3fs", millis / 1000.0);
+	}
+}
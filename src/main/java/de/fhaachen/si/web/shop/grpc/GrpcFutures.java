@@ -0,0 +1,120 @@
+package de.fhaachen.si.web.shop.grpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Bridges gRPC future and async stubs to {@link CompletableFuture}.
+ */
+final class GrpcFutures {
+
+	private GrpcFutures() {
+	}
+
+	static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenable) {
+		CompletableFuture<T> future = new CompletableFuture<>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				// cancelling the returned future cancels the RPC as well
+				listenable.cancel(mayInterruptIfRunning);
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		Futures.addCallback(listenable, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T result) {
+				future.complete(result);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				future.completeExceptionally(t);
+			}
+		}, MoreExecutors.directExecutor());
+		return future;
+	}
+
+	/**
+	 * Collects a server-streaming call into a list without blocking. If the server does not
+	 * implement the streaming RPC yet, the unary fallback is used.
+	 */
+	static <T> CompletableFuture<List<T>> collectServerStream(Consumer<StreamObserver<T>> call,
+			Supplier<CompletableFuture<List<T>>> unaryFallback) {
+		CompletableFuture<List<T>> future = new CompletableFuture<>();
+		call.accept(new StreamObserver<T>() {
+			private final List<T> elements = new ArrayList<>();
+
+			@Override
+			public void onNext(T value) {
+				elements.add(value);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				if (Status.fromThrowable(t).getCode() == Status.Code.UNIMPLEMENTED) {
+					unaryFallback.get().whenComplete((list, e) -> {
+						if (e != null) {
+							future.completeExceptionally(e);
+						} else {
+							future.complete(list);
+						}
+					});
+				} else {
+					future.completeExceptionally(t);
+				}
+			}
+
+			@Override
+			public void onCompleted() {
+				future.complete(elements);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Sends all requests over one client-streaming call and completes with its single response.
+	 */
+	static <T, R> CompletableFuture<R> clientStream(Function<StreamObserver<R>, StreamObserver<T>> call,
+			List<T> requests) {
+		CompletableFuture<R> future = new CompletableFuture<>();
+		StreamObserver<T> requestObserver = call.apply(new StreamObserver<R>() {
+			@Override
+			public void onNext(R value) {
+				future.complete(value);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				future.completeExceptionally(t);
+			}
+
+			@Override
+			public void onCompleted() {
+				if (!future.isDone()) {
+					future.completeExceptionally(Status.INTERNAL.withDescription("No response").asRuntimeException());
+				}
+			}
+		});
+		try {
+			requests.forEach(requestObserver::onNext);
+			requestObserver.onCompleted();
+		} catch (RuntimeException e) {
+			requestObserver.onError(e);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+}
@@ -0,0 +1,48 @@
+package de.fhaachen.si.web.shop.grpc;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * Adapts blocking server-streaming calls to {@link Stream}s that pull one message at a time.
+ */
+final class GrpcStreams {
+
+	private GrpcStreams() {
+	}
+
+	/**
+	 * Starts the streaming call and returns its elements lazily. Closing the stream cancels the
+	 * call. If the server does not implement the streaming RPC yet, the unary fallback is used.
+	 */
+	static <T> Stream<T> serverStream(Supplier<Iterator<T>> call, Supplier<List<T>> unaryFallback) {
+		Context.CancellableContext context = Context.current().withCancellation();
+		Iterator<T> iterator;
+		try {
+			iterator = context.call(call::get);
+			// the first hasNext() surfaces UNIMPLEMENTED before anything is handed out
+			iterator.hasNext();
+		} catch (StatusRuntimeException e) {
+			context.cancel(null);
+			if (e.getStatus().getCode() == Status.Code.UNIMPLEMENTED) {
+				System.err.println("[gRPC] Streaming RPC not available, falling back to unary call");
+				return unaryFallback.get().stream();
+			}
+			throw e;
+		} catch (Exception e) {
+			context.cancel(e);
+			throw new IllegalStateException(e);
+		}
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+				.onClose(() -> context.cancel(null));
+	}
+}
@@ -0,0 +1,69 @@
+package de.fhaachen.si.web.shop.grpc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * Counts, per gRPC method, how many calls were made, how many hedged attempts were
+ * started and how many of those produced the response that was used.
+ */
+class HedgingMetrics implements ClientInterceptor {
+
+	private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+			CallOptions callOptions, Channel next) {
+		Counters methodCounters = counters.computeIfAbsent(method.getFullMethodName(), name -> new Counters());
+		methodCounters.calls.incrementAndGet();
+		return next.newCall(method, callOptions.withStreamTracerFactory(new ClientStreamTracer.Factory() {
+			@Override
+			public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+				if (info.getPreviousAttempts() == 0 || info.isTransparentRetry()) {
+					return new ClientStreamTracer() {
+					};
+				}
+				methodCounters.hedgesFired.incrementAndGet();
+				return new ClientStreamTracer() {
+					@Override
+					public void streamClosed(Status status) {
+						// losing attempts are cancelled once another attempt commits
+						if (status.isOk()) {
+							methodCounters.hedgesWon.incrementAndGet();
+						}
+					}
+				};
+			}
+		}));
+	}
+
+	Map<String, Object> getStats() {
+		Map<String, Object> stats = new TreeMap<>();
+		counters.forEach((method, c) -> {
+			Map<String, Object> methodStats = new LinkedHashMap<>();
+			methodStats.put("calls", c.calls.get());
+			methodStats.put("hedgesFired", c.hedgesFired.get());
+			methodStats.put("hedgesWon", c.hedgesWon.get());
+			stats.put(method, methodStats);
+		});
+		return stats;
+	}
+
+	private static final class Counters {
+		final AtomicLong calls = new AtomicLong();
+		final AtomicLong hedgesFired = new AtomicLong();
+		final AtomicLong hedgesWon = new AtomicLong();
+	}
+}
@@ -1,29 +1,35 @@
 package de.fhaachen.si.web.shop.grpc;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Component;
 
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.StatusRuntimeException;
 @Component
 public class OrderClient {
 
 	 private final OrderGrpc.OrderBlockingStub stub;
 
-	    public OrderClient() {
-	        ManagedChannel channel = ManagedChannelBuilder
-	                .forAddress("host.docker.internal", 9090)
-	                .usePlaintext()
-	                .build();
-	        this.stub = OrderGrpc.newBlockingStub(channel);
+	 private final OrderGrpc.OrderFutureStub futureStub;
+
+	 private final OrderGrpc.OrderStub asyncStub;
+
+	 private final CircuitBreaker circuitBreaker;
+
+	    public OrderClient(GrpcChannelFactory channelFactory, CircuitBreakers circuitBreakers) {
+	        this.stub = OrderGrpc.newBlockingStub(channelFactory.getChannel());
+	        this.futureStub = OrderGrpc.newFutureStub(channelFactory.getChannel());
+	        this.asyncStub = OrderGrpc.newStub(channelFactory.getChannel());
+	        this.circuitBreaker = circuitBreakers.order();
 	    }
 
 	    public OrderResponse createOrder(OrderRequest request) {
 	        try {
 	            System.out.println("[gRPC] Sending CreateOrder request...");
-	            return stub.createOrder(request);
+	            return circuitBreaker.call(() -> stub.createOrder(request));
 	        } catch (StatusRuntimeException e) {
 	            System.err.println("[gRPC] CreateOrder failed: " + e.getStatus());
 	            throw e;
@@ -32,7 +38,7 @@ public class OrderClient {
 
 	    public OrderResponse getOrderById(String orderId) {
 	        try {
-	            return stub.getOrderById(OrderIdRequest.newBuilder().setOrderId(orderId).build());
+	            return circuitBreaker.call(() -> stub.getOrderById(OrderIdRequest.newBuilder().setOrderId(orderId).build()));
 	        } catch (StatusRuntimeException e) {
 	            System.err.println("[gRPC] GetOrderById failed: " + e.getStatus());
 	            throw e;
@@ -41,17 +47,131 @@ public class OrderClient {
 
 	    public OrderResponse changeOrderStatus(String orderId, String newStatus) {
 	        try {
-	            return stub.changeOrderStatus(OrderStatusRequest.newBuilder()
+	            return circuitBreaker.call(() -> stub.changeOrderStatus(OrderStatusRequest.newBuilder()
 	                    .setOrderId(orderId)
 	                    .setNewStatus(newStatus)
-	                    .build());
+	                    .build()));
 	        } catch (StatusRuntimeException e) {
 	            System.err.println("[gRPC] ChangeOrderStatus failed: " + e.getStatus());
 	            throw e;
 	        }
 	    }
 	    
+	    public OrderPageResponse getOrdersByCustomer(String customerUUID, int pageSize, String pageToken) {
+	        try {
+	            return circuitBreaker.call(() -> stub.getOrdersByCustomer(customerOrdersRequest(customerUUID, pageSize, pageToken)));
+	        } catch (StatusRuntimeException e) {
+	            System.err.println("[gRPC] GetOrdersByCustomer failed: " + e.getStatus());
+	            throw e;
+	        }
+	    }
+
+	    public OrderPageResponse listOrders(String status, String customerUUID, int pageSize, String pageToken) {
+	        try {
+	            return circuitBreaker.call(() -> stub.listOrders(listOrdersRequest(status, customerUUID, pageSize, pageToken)));
+	        } catch (StatusRuntimeException e) {
+	            System.err.println("[gRPC] ListOrders failed: " + e.getStatus());
+	            throw e;
+	        }
+	    }
+
 	    public List<OrderResponse> getAllOrders() {
+	        return circuitBreaker.call(this::fetchAllOrders);
+	    }
+
+	    /**
+	     * Streams all orders one at a time. The caller must close the stream.
+	     */
+	    public Stream<OrderResponse> streamOrders() {
+	        return circuitBreaker.call(() -> GrpcStreams.serverStream(
+	                () -> stub.streamOrders(Empty.newBuilder().build()), this::fetchAllOrders));
+	    }
+
+	    public void streamOrders(Consumer<OrderResponse> consumer) {
+	        try (Stream<OrderResponse> orders = streamOrders()) {
+	            orders.forEach(consumer);
+	        }
+	    }
+
+	    public CompletableFuture<OrderResponse> createOrderAsync(OrderRequest request) {
+	        System.out.println("[gRPC] Sending CreateOrder request...");
+	        return logFailure("CreateOrder", circuitBreaker.callAsync(
+	                () -> GrpcFutures.toCompletableFuture(futureStub.createOrder(request))));
+	    }
+
+	    /**
+	     * Streams the orders to the ERP in one CreateOrders call.
+	     */
+	    public CompletableFuture<List<OrderResponse>> createOrdersAsync(List<OrderRequest> requests) {
+	        System.out.println("[gRPC] Sending CreateOrders with " + requests.size() + " orders...");
+	        return logFailure("CreateOrders", circuitBreaker.callAsync(() -> GrpcFutures
+	                .<OrderRequest, OrderListResponse>clientStream(asyncStub::createOrders, requests)
+	                .thenApply(OrderListResponse::getOrdersList)));
+	    }
+
+	    public CompletableFuture<OrderResponse> getOrderByIdAsync(String orderId) {
+	        return logFailure("GetOrderById", circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+	                futureStub.getOrderById(OrderIdRequest.newBuilder().setOrderId(orderId).build()))));
+	    }
+
+	    public CompletableFuture<OrderResponse> changeOrderStatusAsync(String orderId, String newStatus) {
+	        return logFailure("ChangeOrderStatus", circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+	                futureStub.changeOrderStatus(OrderStatusRequest.newBuilder()
+	                        .setOrderId(orderId)
+	                        .setNewStatus(newStatus)
+	                        .build()))));
+	    }
+
+	    public CompletableFuture<OrderPageResponse> getOrdersByCustomerAsync(String customerUUID, int pageSize,
+	            String pageToken) {
+	        return logFailure("GetOrdersByCustomer", circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+	                futureStub.getOrdersByCustomer(customerOrdersRequest(customerUUID, pageSize, pageToken)))));
+	    }
+
+	    public CompletableFuture<OrderPageResponse> listOrdersAsync(String status, String customerUUID, int pageSize,
+	            String pageToken) {
+	        return logFailure("ListOrders", circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+	                futureStub.listOrders(listOrdersRequest(status, customerUUID, pageSize, pageToken)))));
+	    }
+
+	    /**
+	     * Collects all orders from StreamOrders without holding a thread while they arrive.
+	     */
+	    public CompletableFuture<List<OrderResponse>> getAllOrdersAsync() {
+	        Empty empty = Empty.newBuilder().build();
+	        return logFailure("StreamOrders", circuitBreaker.callAsync(() -> GrpcFutures.collectServerStream(
+	                observer -> asyncStub.streamOrders(empty, observer),
+	                () -> GrpcFutures.toCompletableFuture(futureStub.getAllOrders(empty))
+	                        .thenApply(OrderListResponse::getOrdersList))));
+	    }
+
+	    private static CustomerOrdersRequest customerOrdersRequest(String customerUUID, int pageSize, String pageToken) {
+	        return CustomerOrdersRequest.newBuilder()
+	                .setCustomerId(customerUUID)
+	                .setPageSize(pageSize)
+	                .setPageToken(pageToken != null ? pageToken : "")
+	                .build();
+	    }
+
+	    private static ListOrdersRequest listOrdersRequest(String status, String customerUUID, int pageSize,
+	            String pageToken) {
+	        return ListOrdersRequest.newBuilder()
+	                .setStatus(status != null ? status : "")
+	                .setCustomerId(customerUUID != null ? customerUUID : "")
+	                .setPageSize(pageSize)
+	                .setPageToken(pageToken != null ? pageToken : "")
+	                .build();
+	    }
+
+	    private List<OrderResponse> fetchAllOrders() {
 	        return stub.getAllOrders(Empty.newBuilder().build()).getOrdersList();
 	    }
+
+	    private static <T> CompletableFuture<T> logFailure(String method, CompletableFuture<T> future) {
+	        return future.whenComplete((result, e) -> {
+	            if (e != null) {
+	                System.err.println("[gRPC] " + method + " failed: " + e.getMessage());
+	            }
+	        });
+	    }
 }
@@ -1,28 +1,69 @@
 package de.fhaachen.si.web.shop.grpc;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Component;
 
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
-
 @Component
 public class ProductClient {
 	  private final ProductGrpc.ProductBlockingStub stub;
 
-	    public ProductClient() {
-	        ManagedChannel channel = ManagedChannelBuilder.forAddress("host.docker.internal", 9090)
-	                .usePlaintext()
-	                .build();
-	        stub = ProductGrpc.newBlockingStub(channel);
+	  private final ProductGrpc.ProductFutureStub futureStub;
+
+	  private final ProductGrpc.ProductStub asyncStub;
+
+	  private final CircuitBreaker circuitBreaker;
+
+	    public ProductClient(GrpcChannelFactory channelFactory, CircuitBreakers circuitBreakers) {
+	        stub = ProductGrpc.newBlockingStub(channelFactory.getChannel());
+	        futureStub = ProductGrpc.newFutureStub(channelFactory.getChannel());
+	        asyncStub = ProductGrpc.newStub(channelFactory.getChannel());
+	        circuitBreaker = circuitBreakers.product();
 	    }
 
 	    public List<ProductResponse> getAllProducts() {
-	        return stub.getAllProducts(Empty.newBuilder().build()).getProductsList();
+	        return circuitBreaker.call(this::fetchAllProducts);
+	    }
+
+	    /**
+	     * Streams the catalog one product at a time. The caller must close the stream.
+	     */
+	    public Stream<ProductResponse> streamProducts() {
+	        // only opening the stream is guarded; the fallback must not take a second half-open probe
+	        return circuitBreaker.call(() -> GrpcStreams.serverStream(
+	                () -> stub.streamProducts(Empty.newBuilder().build()), this::fetchAllProducts));
+	    }
+
+	    public void streamProducts(Consumer<ProductResponse> consumer) {
+	        try (Stream<ProductResponse> products = streamProducts()) {
+	            products.forEach(consumer);
+	        }
 	    }
 
 	    public ProductResponse getProductById(String id) {
-	        return stub.getProductById(ProductIdRequest.newBuilder().setId(id).build());
+	        return circuitBreaker.call(() -> stub.getProductById(ProductIdRequest.newBuilder().setId(id).build()));
+	    }
+
+	    /**
+	     * Collects the catalog from StreamProducts without holding a thread while it arrives.
+	     */
+	    public CompletableFuture<List<ProductResponse>> getAllProductsAsync() {
+	        Empty empty = Empty.newBuilder().build();
+	        return circuitBreaker.callAsync(() -> GrpcFutures.collectServerStream(
+	                observer -> asyncStub.streamProducts(empty, observer),
+	                () -> GrpcFutures.toCompletableFuture(futureStub.getAllProducts(empty))
+	                        .thenApply(ProductList::getProductsList)));
+	    }
+
+	    public CompletableFuture<ProductResponse> getProductByIdAsync(String id) {
+	        return circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+	                futureStub.getProductById(ProductIdRequest.newBuilder().setId(id).build())));
+	    }
+
+	    private List<ProductResponse> fetchAllProducts() {
+	        return stub.getAllProducts(Empty.newBuilder().build()).getProductsList();
 	    }
 }
@@ -1,37 +1,106 @@
 package de.fhaachen.si.web.shop.grpc;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.stereotype.Component;
-import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 
+/**
+ * Stock lookups against the ERP. All calls go through the stock circuit breaker; failures are
+ * propagated to the caller (a {@link CircuitOpenException} while the breaker is open) so that
+ * {@code StockCache} can fall back to the last known value.
+ */
 @Component
 public class StockClient {
     private final StockGrpc.StockBlockingStub stub;
 
-    public StockClient() {
-        System.out.println("[gRPC] Creating channel to host.docker.internal:9090...");
-        ManagedChannel channel = ManagedChannelBuilder.forAddress("host.docker.internal", 9090)
-                .usePlaintext()
-                .build();
-        System.out.println("[gRPC] Channel created successfully.");
-        stub = StockGrpc.newBlockingStub(channel);
+    private final StockGrpc.StockFutureStub futureStub;
+
+    private final CircuitBreaker circuitBreaker;
+
+    public StockClient(GrpcChannelFactory channelFactory, CircuitBreakers circuitBreakers) {
+        stub = StockGrpc.newBlockingStub(channelFactory.getChannel());
+        futureStub = StockGrpc.newFutureStub(channelFactory.getChannel());
+        circuitBreaker = circuitBreakers.stock();
     }
 
     public int getStock(String productId) {
         System.out.println("[gRPC] Requesting stock for productId: " + productId);
         try {
-            StockResponse response = stub.getStock(StockRequest.newBuilder().setItemId(productId).build());
+            StockResponse response = circuitBreaker.call(
+                    () -> stub.getStock(StockRequest.newBuilder().setItemId(productId).build()));
             System.out.println("[gRPC] Response received: quantity=" + response.getQuantity());
             return response.getQuantity();
         } catch (StatusRuntimeException e) {
             System.err.println("[gRPC] Request failed: " + e.getStatus());
-            e.printStackTrace();
-            return -1;
-        } catch (Exception e) {
-            System.err.println("[gRPC] Unexpected error: " + e.getMessage());
-            e.printStackTrace();
-            return -2;
+            throw e;
+        }
+    }
+
+    /**
+     * Fetches the stock of several items in one round trip. Items the ERP does not report are
+     * missing from the result.
+     */
+    public Map<String, Integer> getStockBatch(Collection<String> productIds) {
+        System.out.println("[gRPC] Requesting stock for " + productIds.size() + " products");
+        try {
+            StockBatchResponse response = circuitBreaker.call(() -> stub.getStockBatch(StockBatchRequest.newBuilder()
+                    .addAllItemIds(productIds)
+                    .build()));
+            return response.getQuantitiesMap();
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+                System.err.println("[gRPC] Batch request failed: " + e.getStatus());
+                throw e;
+            }
+            System.err.println("[gRPC] GetStockBatch not available, falling back to GetStock per item");
+            Map<String, Integer> stocks = new HashMap<>();
+            productIds.forEach(id -> stocks.put(id, getStock(id)));
+            return stocks;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Non-blocking variant of {@link #getStock}.
+     */
+    public CompletableFuture<Integer> getStockAsync(String productId) {
+        return circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+                futureStub.getStock(StockRequest.newBuilder().setItemId(productId).build())))
+                .thenApply(StockResponse::getQuantity)
+                .whenComplete((quantity, e) -> {
+                    if (e != null) {
+                        System.err.println("[gRPC] Request failed: " + e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Non-blocking variant of {@link #getStockBatch}.
+     */
+    public CompletableFuture<Map<String, Integer>> getStockBatchAsync(Collection<String> productIds) {
+        List<String> ids = List.copyOf(productIds);
+        return circuitBreaker.callAsync(() -> GrpcFutures.toCompletableFuture(
+                futureStub.getStockBatch(StockBatchRequest.newBuilder().addAllItemIds(ids).build())))
+                .<Map<String, Integer>>thenApply(StockBatchResponse::getQuantitiesMap)
+                .exceptionallyCompose(e -> {
+                    if (Status.fromThrowable(e).getCode() != Status.Code.UNIMPLEMENTED) {
+                        System.err.println("[gRPC] Batch request failed: " + e.getMessage());
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    System.err.println("[gRPC] GetStockBatch not available, falling back to GetStock per item");
+                    Map<String, CompletableFuture<Integer>> single = new HashMap<>();
+                    ids.forEach(id -> single.put(id, getStockAsync(id)));
+                    return CompletableFuture.allOf(single.values().toArray(CompletableFuture[]::new))
+                            .thenApply(done -> {
+                                Map<String, Integer> stocks = new HashMap<>();
+                                single.forEach((id, future) -> stocks.put(id, future.join()));
+                                return stocks;
+                            });
+                });
+    }
+}
@@ -17,6 +17,7 @@ public interface OrderMapper {
 	@Mapping(source = "customer.customerUUID", target = "customerUUID")
 	@Mapping(source = "status", target = "status", qualifiedByName = "statusToString")
 	@Mapping(target = "items", source = "orderItems")
+	@Mapping(target = "idempotencyKey", ignore = true)
 	OrderDTO orderToOrderDTO(Order order);
 
     @Mapping(source = "product.id", target = "productId")
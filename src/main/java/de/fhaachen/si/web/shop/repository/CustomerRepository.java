@@ -1,6 +1,7 @@
 package de.fhaachen.si.web.shop.repository;
 
 import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
@@ -11,4 +12,6 @@ import de.fhaachen.si.web.shop.entity.User;
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long>{
 	public Optional<Customer> findByUser(User user);
+
+	public Optional<Customer> findByCustomerUUID(UUID customerUUID);
 }
@@ -0,0 +1,115 @@
+package de.fhaachen.si.web.shop.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import de.fhaachen.si.web.shop.entity.OrderIdempotencyKey;
+
+/**
+ * Set-based access to {@link OrderIdempotencyKey}: every method handles all keys of a batch
+ * in one statement. Keys are always looked up together with their owner.
+ */
+@Repository
+public class OrderIdempotencyRepository {
+
+	// a claim without an order is taken over once it is older than the cutoff,
+	// so a crash between claiming and creating does not block the key forever
+	private static final String CLAIM_SQL = """
+			INSERT INTO order_idempotency_keys (owner, idempotency_key, claimed_at)
+			SELECT ?, k, ? FROM unnest(?) AS k
+			ON CONFLICT (owner, idempotency_key) DO UPDATE SET claimed_at = EXCLUDED.claimed_at
+			WHERE order_idempotency_keys.order_id IS NULL AND order_idempotency_keys.claimed_at < ?
+			RETURNING idempotency_key
+			""";
+
+	private static final String FIND_SQL = """
+			SELECT idempotency_key, order_id FROM order_idempotency_keys
+			WHERE owner = ? AND idempotency_key = ANY (?)
+			""";
+
+	private static final String COMPLETE_SQL = """
+			UPDATE order_idempotency_keys SET order_id = ? WHERE owner = ? AND idempotency_key = ?
+			""";
+
+	private static final String RELEASE_SQL = """
+			DELETE FROM order_idempotency_keys
+			WHERE owner = ? AND idempotency_key = ANY (?) AND order_id IS NULL
+			""";
+
+	private static final String PURGE_SQL = """
+			DELETE FROM order_idempotency_keys WHERE claimed_at < ?
+			""";
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Claims the keys that are not taken yet (or whose claim was abandoned before {@code staleBefore}).
+	 *
+	 * @return the keys claimed by this call
+	 */
+	public Set<String> claim(String owner, Collection<String> keys, LocalDateTime staleBefore) {
+		List<String> claimed = jdbcTemplate.query(CLAIM_SQL, ps -> {
+			ps.setString(1, owner);
+			ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+			ps.setArray(3, ps.getConnection().createArrayOf("text", keys.toArray()));
+			ps.setTimestamp(4, Timestamp.valueOf(staleBefore));
+		}, (rs, rowNum) -> rs.getString(1));
+		return new HashSet<>(claimed);
+	}
+
+	/**
+	 * @return the order id per key; keys that are claimed but have no order yet map to {@code null}
+	 */
+	public Map<String, String> findOrderIds(String owner, Collection<String> keys) {
+		Map<String, String> orderIds = new HashMap<>();
+		jdbcTemplate.query(FIND_SQL, ps -> {
+			ps.setString(1, owner);
+			ps.setArray(2, ps.getConnection().createArrayOf("text", keys.toArray()));
+		}, rs -> {
+			orderIds.put(rs.getString(1), rs.getString(2));
+		});
+		return orderIds;
+	}
+
+	/**
+	 * Stores the order ids of claimed keys. Runs in the caller's transaction, so a key that is
+	 * completed together with the insert of its order cannot outlive a rollback of that insert.
+	 */
+	public void complete(String owner, Map<String, String> orderIdsByKey) {
+		if (orderIdsByKey.isEmpty()) {
+			return;
+		}
+		List<Object[]> args = new ArrayList<>(orderIdsByKey.size());
+		orderIdsByKey.forEach((key, orderId) -> args.add(new Object[] { orderId, owner, key }));
+		jdbcTemplate.batchUpdate(COMPLETE_SQL, args);
+	}
+
+	/**
+	 * Gives up claims whose order was certainly not created, so the client can retry with the same keys.
+	 */
+	public void release(String owner, Collection<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.update(RELEASE_SQL, ps -> {
+			ps.setString(1, owner);
+			ps.setArray(2, ps.getConnection().createArrayOf("text", keys.toArray()));
+		});
+	}
+
+	public int purgeOlderThan(LocalDateTime cutoff) {
+		return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(cutoff));
+	}
+}
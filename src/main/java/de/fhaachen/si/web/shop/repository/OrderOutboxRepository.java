@@ -0,0 +1,162 @@
+package de.fhaachen.si.web.shop.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import de.fhaachen.si.web.shop.entity.OrderOutboxEntry;
+import de.fhaachen.si.web.shop.entity.OutboxStatus;
+
+/**
+ * Queue operations on the order outbox. Claiming uses {@code FOR UPDATE SKIP LOCKED} and a
+ * lease, so several instances can dispatch at the same time without sending an entry twice.
+ */
+@Repository
+public class OrderOutboxRepository {
+
+	private static final String COLUMNS = """
+			id, payload, customer_uuid, status, attempts, lease_expiries, next_attempt_at, locked_until, created_at, erp_order_id, last_error
+			""";
+
+	private static final String ENQUEUE_SQL = """
+			INSERT INTO order_outbox (id, payload, customer_uuid, status, attempts, lease_expiries, next_attempt_at, created_at)
+			VALUES (nextval('order_outbox_seq'), ?, ?, 'PENDING', 0, 0, ?, ?)
+			RETURNING id
+			""";
+
+	private static final String CLAIM_SQL = """
+			UPDATE order_outbox SET status = 'SENDING', locked_until = ?,
+				attempts = attempts + CASE WHEN status = 'SENDING' THEN 1 ELSE 0 END,
+				lease_expiries = lease_expiries + CASE WHEN status = 'SENDING' THEN 1 ELSE 0 END
+			WHERE id IN (
+				SELECT id FROM order_outbox
+				WHERE (status = 'PENDING' AND next_attempt_at <= ?) OR (status = 'SENDING' AND locked_until < ?)
+				ORDER BY id
+				LIMIT ?
+				FOR UPDATE SKIP LOCKED)
+			RETURNING
+			""" + COLUMNS;
+
+	private static final String MARK_SENT_SQL = """
+			UPDATE order_outbox SET status = 'SENT', erp_order_id = ?, locked_until = NULL, last_error = NULL
+			WHERE id = ?
+			""";
+
+	private static final String RESCHEDULE_SQL = """
+			UPDATE order_outbox SET status = ?, attempts = ?, next_attempt_at = ?, locked_until = NULL, last_error = ?
+			WHERE id = ?
+			""";
+
+	private static final String COUNT_SQL = """
+			SELECT status, COUNT(*) FROM order_outbox GROUP BY status
+			""";
+
+	private static final String PURGE_SQL = """
+			DELETE FROM order_outbox WHERE status = 'SENT' AND created_at < ?
+			""";
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Adds an order to the outbox; joins the caller's transaction.
+	 *
+	 * @return the id of the new entry
+	 */
+	public long enqueue(String payload, String customerUUID) {
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		return jdbcTemplate.queryForObject(ENQUEUE_SQL, Long.class, payload, customerUUID, now, now);
+	}
+
+	/**
+	 * Marks up to {@code limit} due entries as SENDING until {@code lockedUntil} and returns them.
+	 * Reclaiming an entry whose lease ran out counts the lost try as an attempt and a lease expiry.
+	 */
+	public List<OrderOutboxEntry> claimDue(int limit, LocalDateTime lockedUntil) {
+		Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		List<OrderOutboxEntry> entries = new ArrayList<>(jdbcTemplate.query(CLAIM_SQL, this::mapEntry,
+				Timestamp.valueOf(lockedUntil), now, now, limit));
+		// RETURNING does not keep the order of the subquery
+		entries.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+		return entries;
+	}
+
+	public void markSent(Map<Long, String> erpOrderIds) {
+		if (erpOrderIds.isEmpty()) {
+			return;
+		}
+		List<Object[]> args = new ArrayList<>(erpOrderIds.size());
+		erpOrderIds.forEach((id, erpOrderId) -> args.add(new Object[] { erpOrderId, id }));
+		jdbcTemplate.batchUpdate(MARK_SENT_SQL, args);
+	}
+
+	/**
+	 * Writes back status, attempts, next attempt and last error of the given entries.
+	 */
+	public void reschedule(List<OrderOutboxEntry> entries) {
+		if (entries.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.batchUpdate(RESCHEDULE_SQL, entries, entries.size(), (ps, entry) -> {
+			ps.setString(1, entry.getStatus().name());
+			ps.setInt(2, entry.getAttempts());
+			ps.setTimestamp(3, Timestamp.valueOf(entry.getNextAttemptAt()));
+			ps.setString(4, truncate(entry.getLastError()));
+			ps.setLong(5, entry.getId());
+		});
+	}
+
+	public Optional<OrderOutboxEntry> findById(long id) {
+		return jdbcTemplate.query("SELECT " + COLUMNS + " FROM order_outbox WHERE id = ?", this::mapEntry, id)
+				.stream().findFirst();
+	}
+
+	public Map<String, Long> countByStatus() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		for (OutboxStatus status : OutboxStatus.values()) {
+			counts.put(status.name(), 0L);
+		}
+		jdbcTemplate.query(COUNT_SQL, rs -> {
+			counts.put(rs.getString(1), rs.getLong(2));
+		});
+		return counts;
+	}
+
+	public int purgeSentBefore(LocalDateTime cutoff) {
+		return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(cutoff));
+	}
+
+	private OrderOutboxEntry mapEntry(ResultSet rs, int rowNum) throws SQLException {
+		OrderOutboxEntry entry = new OrderOutboxEntry();
+		entry.setId(rs.getLong("id"));
+		entry.setPayload(rs.getString("payload"));
+		entry.setCustomerUUID(rs.getString("customer_uuid"));
+		entry.setStatus(OutboxStatus.valueOf(rs.getString("status")));
+		entry.setAttempts(rs.getInt("attempts"));
+		entry.setLeaseExpiries(rs.getInt("lease_expiries"));
+		entry.setNextAttemptAt(toLocalDateTime(rs.getTimestamp("next_attempt_at")));
+		entry.setLockedUntil(toLocalDateTime(rs.getTimestamp("locked_until")));
+		entry.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+		entry.setErpOrderId(rs.getString("erp_order_id"));
+		entry.setLastError(rs.getString("last_error"));
+		return entry;
+	}
+
+	private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+		return timestamp != null ? timestamp.toLocalDateTime() : null;
+	}
+
+	private static String truncate(String error) {
+		return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+	}
+}
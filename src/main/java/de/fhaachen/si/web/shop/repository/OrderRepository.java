@@ -1,14 +1,50 @@
 package de.fhaachen.si.web.shop.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import de.fhaachen.si.web.shop.entity.Customer;
 import de.fhaachen.si.web.shop.entity.Order;
+import de.fhaachen.si.web.shop.entity.OrderStatus;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long>{
 	List<Order> findByCustomer(Customer customer);
+
+	List<Order> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+	List<Order> findByCustomerAndIdGreaterThanOrderByIdAsc(Customer customer, Long id, Limit limit);
+
+	/**
+	 * Ids of the orders after the cursor, newest first. Pass {@code null} to skip a filter.
+	 */
+	@Query("""
+			select o.id from Order o
+			where (:status is null or o.status = :status)
+			  and (:customerId is null or o.customer.id = :customerId)
+			  and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))
+			order by o.createdAt desc, o.id desc
+			""")
+	List<Long> findIdsBefore(@Param("status") OrderStatus status, @Param("customerId") Long customerId,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
+
+	/**
+	 * Loads the orders together with everything the order mapper reads, in a single query.
+	 */
+	@Query("""
+			select distinct o from Order o
+			left join fetch o.customer c
+			left join fetch c.user
+			left join fetch o.orderItems i
+			left join fetch i.product
+			where o.id in :ids
+			""")
+	List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
 }
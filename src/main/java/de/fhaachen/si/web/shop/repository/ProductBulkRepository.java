@@ -0,0 +1,182 @@
+package de.fhaachen.si.web.shop.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import de.fhaachen.si.web.shop.entity.Product;
+import jakarta.transaction.Transactional;
+
+/**
+ * Set-based writes for the catalog sync that bypass the persistence context.
+ * New rows take their id from the same sequence Hibernate uses for {@link Product}.
+ */
+@Repository
+public class ProductBulkRepository {
+
+	private static final String FIND_EXISTING_SQL = """
+			SELECT product_id FROM product WHERE product_id = ANY (?)
+			""";
+
+	private static final String UPDATE_SQL = """
+			UPDATE product SET name = ?, description = ?, price = ?, stock = ?
+			WHERE product_id = ?
+				AND (name, description, price, stock) IS DISTINCT FROM (?, ?, ?, ?)
+			""";
+
+	// only used for productIDs that were missing a moment ago, so nextval is not spent on
+	// rows that turn out to exist; the conflict clause covers rows inserted concurrently
+	private static final String UPSERT_SQL = """
+			INSERT INTO product (id, product_id, name, description, price, stock)
+			VALUES (nextval('product_seq'), ?, ?, ?, ?, ?)
+			ON CONFLICT (product_id) DO UPDATE SET
+				name = EXCLUDED.name,
+				description = EXCLUDED.description,
+				price = EXCLUDED.price,
+				stock = EXCLUDED.stock
+			WHERE (product.name, product.description, product.price, product.stock)
+				IS DISTINCT FROM (EXCLUDED.name, EXCLUDED.description, EXCLUDED.price, EXCLUDED.stock)
+			""";
+
+	private static final String UPSERT_BY_ID_SQL = """
+			INSERT INTO product (id, name, description, price, stock)
+			VALUES (?, ?, ?, ?, 0)
+			ON CONFLICT (id) DO UPDATE SET
+				name = EXCLUDED.name,
+				description = EXCLUDED.description,
+				price = EXCLUDED.price
+			""";
+
+	private static final String INSERT_WITH_ID_SQL = """
+			INSERT INTO product (id, product_id, name, description, price, stock, image_url)
+			VALUES (?, ?, ?, ?, ?, ?, ?)
+			ON CONFLICT DO NOTHING
+			""";
+
+	// moves the sequence past explicitly inserted ids so Hibernate cannot hand them out again
+	private static final String SYNC_SEQUENCE_SQL = """
+			SELECT setval('product_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM product),
+				(SELECT last_value FROM product_seq)))
+			""";
+
+	private static final String DELETE_MISSING_SQL = """
+			DELETE FROM product
+			WHERE product_id IS NOT NULL AND NOT (product_id = ANY (?))
+			RETURNING product_id
+			""";
+
+	@Autowired
+	protected JdbcTemplate jdbcTemplate;
+
+	@Value("${app.files.products.import.batch-size:500}")
+	private int batchSize;
+
+	/**
+	 * Inserts or updates the given products by productID with JDBC batches, all in one transaction.
+	 * Existing rows whose fields are all unchanged are left alone. The productIDs that already
+	 * exist are looked up first, so ids are only drawn from the sequence for new rows.
+	 *
+	 * @return the productIDs of the rows that were inserted or changed
+	 */
+	@Transactional
+	public List<String> upsertAll(List<Product> products) {
+		Set<String> existing = new HashSet<>(jdbcTemplate.query(FIND_EXISTING_SQL,
+				ps -> ps.setArray(1, ps.getConnection().createArrayOf("text",
+						products.stream().map(Product::getProductID).distinct().toArray())),
+				(rs, rowNum) -> rs.getString(1)));
+		List<Product> updates = new ArrayList<>();
+		List<Product> inserts = new ArrayList<>();
+		for (Product product : products) {
+			(existing.contains(product.getProductID()) ? updates : inserts).add(product);
+		}
+
+		List<String> written = new ArrayList<>();
+		collectWritten(updates, jdbcTemplate.batchUpdate(UPDATE_SQL, updates, batchSize, (ps, product) -> {
+			ps.setString(1, product.getName());
+			ps.setString(2, product.getDescription());
+			ps.setDouble(3, product.getPrice());
+			ps.setInt(4, product.getStock());
+			ps.setString(5, product.getProductID());
+			ps.setString(6, product.getName());
+			ps.setString(7, product.getDescription());
+			ps.setDouble(8, product.getPrice());
+			ps.setInt(9, product.getStock());
+		}), written);
+		collectWritten(inserts, jdbcTemplate.batchUpdate(UPSERT_SQL, inserts, batchSize, (ps, product) -> {
+			ps.setString(1, product.getProductID());
+			ps.setString(2, product.getName());
+			ps.setString(3, product.getDescription());
+			ps.setDouble(4, product.getPrice());
+			ps.setInt(5, product.getStock());
+		}), written);
+		return written;
+	}
+
+	private static void collectWritten(List<Product> products, int[][] counts, List<String> written) {
+		int index = 0;
+		for (int[] batch : counts) {
+			for (int count : batch) {
+				// drivers that cannot report per-row counts are treated as "changed"
+				if (count != 0) {
+					written.add(products.get(index).getProductID());
+				}
+				index++;
+			}
+		}
+	}
+
+	/**
+	 * Inserts or updates the given products by their local id, in one transaction. The stock of
+	 * existing products is kept; new products start with a stock of 0.
+	 */
+	@Transactional
+	public void upsertAllById(List<Product> products) {
+		jdbcTemplate.batchUpdate(UPSERT_BY_ID_SQL, products, batchSize, (ps, product) -> {
+			ps.setLong(1, product.getId());
+			ps.setString(2, product.getName());
+			ps.setString(3, product.getDescription());
+			ps.setDouble(4, product.getPrice());
+		});
+	}
+
+	/**
+	 * Inserts products with their ids as given, e.g. to restore a saved catalog. Rows that
+	 * already exist are left alone. Call {@link #syncIdSequence()} afterwards.
+	 */
+	@Transactional
+	public void insertAllWithIds(List<Product> products) {
+		jdbcTemplate.batchUpdate(INSERT_WITH_ID_SQL, products, batchSize, (ps, product) -> {
+			ps.setLong(1, product.getId());
+			ps.setString(2, product.getProductID());
+			ps.setString(3, product.getName());
+			ps.setString(4, product.getDescription());
+			ps.setDouble(5, product.getPrice());
+			ps.setInt(6, product.getStock());
+			ps.setString(7, product.getImageUrl());
+		});
+	}
+
+	public void syncIdSequence() {
+		jdbcTemplate.queryForObject(SYNC_SEQUENCE_SQL, Long.class);
+	}
+
+	/**
+	 * Deletes every product that came from the ERP but is not in {@code productIds}, in a single
+	 * statement. Local-only products (without a productID) are kept.
+	 *
+	 * @return the productIDs of the deleted rows
+	 */
+	@Transactional
+	public List<String> deleteAllNotIn(Collection<String> productIds) {
+		return jdbcTemplate.query(DELETE_MISSING_SQL,
+				ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", productIds.toArray())),
+				(rs, rowNum) -> rs.getString(1));
+	}
+}
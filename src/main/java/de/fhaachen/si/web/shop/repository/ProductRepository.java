@@ -1,7 +1,9 @@
 package de.fhaachen.si.web.shop.repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,4 +12,6 @@ import de.fhaachen.si.web.shop.entity.Product;
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long>{
 	Optional<Product> findByProductID(String productID);
+
+	List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
@@ -0,0 +1,146 @@
+package de.fhaachen.si.web.shop.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import de.fhaachen.si.web.shop.dto.OrderBatchResultDTO;
+import de.fhaachen.si.web.shop.dto.OrderDTO;
+import de.fhaachen.si.web.shop.repository.OrderIdempotencyRepository;
+import de.fhaachen.si.web.shop.service.api.IOrderService;
+import de.fhaachen.si.web.shop.service.api.OrderOutcomeUnknownException;
+
+/**
+ * Batch order submission with idempotency keys. Keys belong to the user who sends them. The
+ * keys of a batch are claimed in one statement before any order is created, so a retried or
+ * concurrent request with the same keys gets the existing orders back instead of creating them
+ * twice; the order service completes a key together with its order. Orders without a key are
+ * always created.
+ */
+@Service
+public class OrderBatchService {
+
+	private static final int MAX_KEY_LENGTH = 128;
+
+	@Autowired
+	protected IOrderService orderService;
+
+	@Autowired
+	protected OrderIdempotencyRepository idempotencyRepository;
+
+	@Value("${app.orders.batch.max-size:500}")
+	private int maxBatchSize;
+
+	@Value("${app.orders.idempotency.claim-timeout-ms:60000}")
+	private long claimTimeoutMs;
+
+	@Value("${app.orders.idempotency.retention-hours:72}")
+	private long retentionHours;
+
+	/**
+	 * @param owner the user sending the batch; its keys are separate from everyone else's
+	 * @return one result per order, in the order of the request
+	 * @throws IllegalArgumentException if the batch is larger than {@code app.orders.batch.max-size}
+	 */
+	public List<OrderBatchResultDTO> submit(String owner, List<OrderDTO> orders) {
+		if (orders.size() > maxBatchSize) {
+			throw new IllegalArgumentException("A batch may contain at most " + maxBatchSize + " orders");
+		}
+		OrderBatchResultDTO[] results = new OrderBatchResultDTO[orders.size()];
+
+		// within a batch the first order with a key wins, later ones are duplicates of it
+		Map<String, Integer> firstByKey = new LinkedHashMap<>();
+		for (int i = 0; i < orders.size(); i++) {
+			String key = orders.get(i).getIdempotencyKey();
+			if (key == null || key.isBlank()) {
+				continue;
+			}
+			if (key.length() > MAX_KEY_LENGTH) {
+				results[i] = OrderBatchResultDTO.failed("Idempotency key longer than " + MAX_KEY_LENGTH + " characters");
+			} else {
+				firstByKey.putIfAbsent(key, i);
+			}
+		}
+
+		Set<String> claimed = firstByKey.isEmpty() ? Set.of()
+				: idempotencyRepository.claim(owner, firstByKey.keySet(),
+						LocalDateTime.now().minusNanos(claimTimeoutMs * 1_000_000));
+		Set<String> taken = new HashSet<>(firstByKey.keySet());
+		taken.removeAll(claimed);
+		Map<String, String> existing = taken.isEmpty() ? Map.of() : idempotencyRepository.findOrderIds(owner, taken);
+
+		List<OrderDTO> toCreate = new ArrayList<>();
+		List<Integer> positions = new ArrayList<>();
+		for (int i = 0; i < orders.size(); i++) {
+			String key = orders.get(i).getIdempotencyKey();
+			if (results[i] != null) {
+				continue;
+			}
+			if (key == null || key.isBlank() || claimed.contains(key) && firstByKey.get(key) == i) {
+				toCreate.add(orders.get(i));
+				positions.add(i);
+			} else if (taken.contains(key)) {
+				results[i] = OrderBatchResultDTO.duplicate(existing.get(key));
+			}
+		}
+
+		List<OrderBatchResultDTO> created;
+		try {
+			created = toCreate.isEmpty() ? List.of() : orderService.createOrdersFromDTOs(toCreate, owner);
+		} catch (OrderOutcomeUnknownException e) {
+			// the orders may exist, so the claims are kept: a retry gets IN_PROGRESS until the
+			// claim times out and is then sent again under the same client reference
+			System.err.println("Outcome of " + toCreate.size() + " batch orders unknown: " + e.getMessage());
+			created = toCreate.stream().map(order -> OrderBatchResultDTO.unknown(e.getMessage())).toList();
+		} catch (RuntimeException e) {
+			// nothing was created
+			idempotencyRepository.release(owner, claimed);
+			throw e;
+		}
+
+		List<String> failed = new ArrayList<>();
+		for (int j = 0; j < created.size(); j++) {
+			int position = positions.get(j);
+			OrderBatchResultDTO result = created.get(j);
+			results[position] = result;
+			String key = orders.get(position).getIdempotencyKey();
+			if (claimed.contains(key) && OrderBatchResultDTO.FAILED.equals(result.getStatus())) {
+				// a rejected order may be corrected and sent again with the same key
+				failed.add(key);
+			}
+		}
+		idempotencyRepository.release(owner, failed);
+
+		for (int i = 0; i < results.length; i++) {
+			String key = orders.get(i).getIdempotencyKey();
+			if (results[i] == null) {
+				OrderBatchResultDTO first = results[firstByKey.get(key)];
+				results[i] = switch (first.getStatus()) {
+					case OrderBatchResultDTO.FAILED -> OrderBatchResultDTO.failed(first.getError());
+					case OrderBatchResultDTO.UNKNOWN -> OrderBatchResultDTO.unknown(first.getError());
+					default -> OrderBatchResultDTO.duplicate(first.getOrderId());
+				};
+			}
+			results[i].setIdempotencyKey(key);
+		}
+		return Arrays.asList(results);
+	}
+
+	@Scheduled(fixedDelayString = "${app.orders.idempotency.purge-interval-ms:3600000}")
+	public void purgeExpiredKeys() {
+		int purged = idempotencyRepository.purgeOlderThan(LocalDateTime.now().minusHours(retentionHours));
+		if (purged > 0) {
+			System.out.printf("Purged %d expired order idempotency keys%n", purged);
+		}
+	}
+}
@@ -2,39 +2,55 @@ package de.fhaachen.si.web.shop.service;
 
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import de.fhaachen.si.web.shop.service.file.api.FileService;
+import de.fhaachen.si.web.shop.service.file.api.ImportListener;
+import de.fhaachen.si.web.shop.service.file.api.ImportPhase;
 
 @Service
 public class ProductSyncScheduler {
 
-    private volatile boolean running = false;
+    // guards against two imports over the product table at the same time
+    private final AtomicBoolean running = new AtomicBoolean(false);
     private volatile String lastImport = null;
     private volatile String lastPeriod = null;
 
     @Autowired
     protected FileService productFileService;
 
-    public void syncProducts(String endpoint, String username, String password) {
-        running = true;
+    /**
+     * Downloads and imports the catalog, reporting progress to the listener.
+     * Only one sync can run at a time; a concurrent call is rejected.
+     *
+     * @return false if the catalog was unchanged and nothing was imported
+     * @throws IllegalStateException if another sync is running
+     */
+    public boolean runSync(String endpoint, String username, String password, ImportListener listener) throws Exception {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A product sync is already running");
+        }
         try {
+            listener.phase(ImportPhase.DOWNLOAD);
             Path csvPath = productFileService.downloadFile(endpoint, username, password);
-            productFileService.importFromJson(csvPath);
+            if (csvPath == null) {
+                System.out.println("Product sync skipped, catalog unchanged at " + LocalDateTime.now());
+                return false;
+            }
+            productFileService.importFromJson(csvPath, listener);
             lastImport = LocalDateTime.now().toString();
             System.out.println("Product sync completed successfully at " + LocalDateTime.now());
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Product sync failed: " + e.getMessage());
-            running = false;
+            return true;
+        } finally {
+            running.set(false);
         }
-        running = false;
     }
 
     public boolean isRunning() {
-        return running;
+        return running.get();
     }
 
     public String getLastImport() {
@@ -48,8 +64,4 @@ public class ProductSyncScheduler {
     public void setLastPeriod(String period) {
         this.lastPeriod = period;
     }
-
-    public void setRunning(boolean running) {
-        this.running = running;
-    }
 }
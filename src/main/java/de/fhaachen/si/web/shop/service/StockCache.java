@@ -0,0 +1,228 @@
+package de.fhaachen.si.web.shop.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import de.fhaachen.si.web.shop.grpc.StockClient;
+
+/**
+ * Short-lived cache of ERP stock levels keyed by external product ID.
+ * Concurrent misses for the same product share one gRPC call, and entries
+ * past their TTL are still served for a grace period while they are
+ * refreshed in the background. When the ERP cannot be reached the last known
+ * value is served instead, and {@link #isStale} reports it as such.
+ */
+@Service
+public class StockCache {
+
+	@Autowired
+	protected StockClient stockClient;
+
+	@Value("${app.erp.stock.cache.ttl-ms:5000}")
+	private long ttlMs;
+
+	@Value("${app.erp.stock.cache.stale-while-revalidate-ms:30000}")
+	private long staleWhileRevalidateMs;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<String, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	public int getStock(String productId) {
+		return getStockAsync(productId).join();
+	}
+
+	public CompletableFuture<Integer> getStockAsync(String productId) {
+		Integer cached = lookup(productId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		misses.incrementAndGet();
+		return load(productId);
+	}
+
+	/**
+	 * Returns the stock of all given products; everything not in the cache is fetched
+	 * with one batch call.
+	 */
+	public Map<String, Integer> getStocks(Collection<String> productIds) {
+		return getStocksAsync(productIds).join();
+	}
+
+	public CompletableFuture<Map<String, Integer>> getStocksAsync(Collection<String> productIds) {
+		Map<String, Integer> cachedResult = new HashMap<>();
+		Map<String, CompletableFuture<Integer>> owned = new HashMap<>();
+		Map<String, CompletableFuture<Integer>> joined = new HashMap<>();
+
+		for (String productId : productIds) {
+			Integer cached = lookup(productId);
+			if (cached != null) {
+				cachedResult.put(productId, cached);
+				continue;
+			}
+			misses.incrementAndGet();
+			CompletableFuture<Integer> created = new CompletableFuture<>();
+			CompletableFuture<Integer> existing = inFlight.putIfAbsent(productId, created);
+			if (existing != null) {
+				coalesced.incrementAndGet();
+				joined.put(productId, existing);
+			} else {
+				owned.put(productId, created);
+			}
+		}
+
+		if (!owned.isEmpty()) {
+			loads.incrementAndGet();
+			stockClient.getStockBatchAsync(owned.keySet()).whenComplete((loaded, e) -> owned.forEach((productId, future) -> {
+				if (e != null) {
+					fail(productId, future, e);
+				} else {
+					complete(productId, future, loaded.get(productId));
+				}
+			}));
+		}
+
+		joined.putAll(owned);
+		return CompletableFuture.allOf(joined.values().toArray(CompletableFuture[]::new)).thenApply(done -> {
+			Map<String, Integer> result = new HashMap<>(cachedResult);
+			joined.forEach((productId, future) -> putIfPresent(result, productId, future.join()));
+			return result;
+		});
+	}
+
+	/**
+	 * True if the value last handed out for this product is older than the stale-while-revalidate
+	 * window, i.e. it came from the fallback because the ERP could not be reached.
+	 */
+	public boolean isStale(String productId) {
+		Entry entry = entries.get(productId);
+		return entry != null && System.currentTimeMillis() - entry.loadedAt > ttlMs + staleWhileRevalidateMs;
+	}
+
+	public void invalidate(String productId) {
+		if (productId == null) {
+			return;
+		}
+		// runs under the same lock the loaders use to publish, so a load racing with
+		// the invalidation can never re-insert the old value. The entry is only expired,
+		// not removed, so it is still available as a fallback.
+		inFlight.compute(productId, (key, future) -> {
+			entries.computeIfPresent(key, (k, entry) -> new Entry(entry.quantity, 0));
+			return null;
+		});
+	}
+
+	public void invalidateAll(Collection<String> productIds) {
+		productIds.forEach(this::invalidate);
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("size", entries.size());
+		stats.put("hits", hits.get());
+		stats.put("staleHits", staleHits.get());
+		stats.put("misses", misses.get());
+		stats.put("coalesced", coalesced.get());
+		stats.put("loads", loads.get());
+		stats.put("fallbacks", fallbacks.get());
+		return stats;
+	}
+
+	private Integer lookup(String productId) {
+		Entry entry = entries.get(productId);
+		if (entry == null) {
+			return null;
+		}
+		long age = System.currentTimeMillis() - entry.loadedAt;
+		if (age <= ttlMs) {
+			hits.incrementAndGet();
+			return entry.quantity;
+		}
+		if (age <= ttlMs + staleWhileRevalidateMs) {
+			staleHits.incrementAndGet();
+			revalidate(productId);
+			return entry.quantity;
+		}
+		return null;
+	}
+
+	private void revalidate(String productId) {
+		if (!inFlight.containsKey(productId)) {
+			load(productId);
+		}
+	}
+
+	private CompletableFuture<Integer> load(String productId) {
+		CompletableFuture<Integer> created = new CompletableFuture<>();
+		CompletableFuture<Integer> existing = inFlight.putIfAbsent(productId, created);
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			return existing;
+		}
+		loads.incrementAndGet();
+		stockClient.getStockAsync(productId).whenComplete((quantity, e) -> {
+			if (e != null) {
+				fail(productId, created, e);
+			} else {
+				complete(productId, created, quantity);
+			}
+		});
+		return created;
+	}
+
+	private void complete(String productId, CompletableFuture<Integer> future, Integer quantity) {
+		inFlight.computeIfPresent(productId, (key, current) -> {
+			if (current == future && quantity != null && quantity >= 0) {
+				entries.put(key, new Entry(quantity, System.currentTimeMillis()));
+			}
+			return current == future ? null : current;
+		});
+		future.complete(quantity);
+	}
+
+	/**
+	 * Answers a failed load with the last known quantity, or -1 if the product was never loaded.
+	 */
+	private void fail(String productId, CompletableFuture<Integer> future, Throwable e) {
+		inFlight.remove(productId, future);
+		Entry entry = entries.get(productId);
+		if (entry != null) {
+			fallbacks.incrementAndGet();
+			future.complete(entry.quantity);
+		} else {
+			future.complete(-1);
+		}
+	}
+
+	private static void putIfPresent(Map<String, Integer> result, String productId, Integer quantity) {
+		if (quantity != null) {
+			result.put(productId, quantity);
+		}
+	}
+
+	private static final class Entry {
+		final int quantity;
+		final long loadedAt;
+
+		Entry(int quantity, long loadedAt) {
+			this.quantity = quantity;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
@@ -1,19 +1,64 @@
 package de.fhaachen.si.web.shop.service.api;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import de.fhaachen.si.web.shop.dto.OrderBatchResultDTO;
 import de.fhaachen.si.web.shop.dto.OrderDTO;
+import de.fhaachen.si.web.shop.dto.OrderPageDTO;
 import de.fhaachen.si.web.shop.entity.OrderStatus;
 
 public interface IOrderService {
 	
 	public OrderDTO createOrderFromDTO(OrderDTO orderDTO);
+
+	/**
+	 * Progress of an order accepted but not yet sent on, by the reference returned when it was
+	 * placed. Empty if there is no such order or it belongs to another customer and
+	 * {@code userEmail} is not an admin.
+	 */
+	public Optional<Map<String, Object>> findOutboxStatus(String reference, String userEmail);
+
+	/**
+	 * Creates the orders together. Returns one result per order in the same order; an order
+	 * that cannot be created fails on its own and does not affect the others. If
+	 * {@code keyOwner} is set, the idempotency keys (claimed by that owner) of the created
+	 * orders are completed as part of creating them.
+	 *
+	 * @throws OrderOutcomeUnknownException if the orders may have been created although the call failed
+	 */
+	public List<OrderBatchResultDTO> createOrdersFromDTOs(List<OrderDTO> orderDTOs, String keyOwner);
 	
-	public List<OrderDTO> getOrdersForCustomer(Long customerId);
+	/**
+	 * One page of a customer's orders, oldest first. {@code pageToken} is {@code null} for the
+	 * first page, afterwards the {@code nextPageToken} of the previous page.
+	 */
+	public OrderPageDTO getOrdersForCustomer(Long customerId, int pageSize, String pageToken);
 	
-	public List<OrderDTO> getAllOrders();
+	/**
+	 * One page of all orders, newest first, optionally filtered by status and customer.
+	 * {@code pageToken} works as for {@link #getOrdersForCustomer}.
+	 */
+	public OrderPageDTO getOrders(OrderStatus status, Long customerId, int pageSize, String pageToken);
+	
+	/**
+	 * Hands every order to the consumer without materializing the whole order list.
+	 */
+	public void forEachOrder(Consumer<OrderDTO> consumer);
 	
 	public OrderDTO updateOrderStatus(Long orderId, OrderStatus status);
 	
 	public OrderDTO getOrderById(Long id);
+	
+	public CompletableFuture<OrderDTO> createOrderFromDTOAsync(OrderDTO orderDTO);
+	
+	public CompletableFuture<OrderPageDTO> getOrdersForCustomerAsync(Long customerId, int pageSize, String pageToken);
+	
+	public CompletableFuture<OrderPageDTO> getOrdersAsync(OrderStatus status, Long customerId, int pageSize,
+			String pageToken);
+	
+	public CompletableFuture<OrderDTO> updateOrderStatusAsync(Long orderId, OrderStatus status);
 }
@@ -1,12 +1,21 @@
 package de.fhaachen.si.web.shop.service.api;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 import de.fhaachen.si.web.shop.dto.ProductDTO;
 
 public interface IProductService {
 
 	List<ProductDTO> getAllProducts();
 
+	/**
+	 * Hands every product to the consumer without materializing the whole catalog.
+	 */
+	void forEachProduct(Consumer<ProductDTO> consumer);
+
 	ProductDTO getProductById(String id);
 
 	ProductDTO createProduct(ProductDTO productDTO);
@@ -17,4 +26,28 @@ public interface IProductService {
 
 	int getStockFromGrpc(String productId);
 
+	/**
+	 * Returns the ERP stock for the given product ids (as used by {@link #getProductById})
+	 * with a single downstream call. Unknown products are left out of the result.
+	 */
+	Map<String, Integer> getStockForProducts(List<String> ids);
+
+	/**
+	 * True if product reads are currently answered from an outdated copy because the backend is unavailable.
+	 */
+	boolean isCatalogStale();
+
+	/**
+	 * True if the stock last returned for this product is a fallback value rather than a current one.
+	 */
+	boolean isStockStale(String productId);
+
+	CompletableFuture<List<ProductDTO>> getAllProductsAsync();
+
+	CompletableFuture<ProductDTO> getProductByIdAsync(String id);
+
+	CompletableFuture<Integer> getStockFromGrpcAsync(String productId);
+
+	CompletableFuture<Map<String, Integer>> getStockForProductsAsync(List<String> ids);
+
 }
@@ -0,0 +1,14 @@
+package de.fhaachen.si.web.shop.service.api;
+
+/**
+ * Thrown when a call that creates orders failed without an answer, e.g. because its deadline
+ * expired, so the orders may or may not exist.
+ */
+public class OrderOutcomeUnknownException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public OrderOutcomeUnknownException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,342 @@
+package de.fhaachen.si.web.shop.service.catalog;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import de.fhaachen.si.web.shop.dto.ProductDTO;
+
+/**
+ * Compact binary copy of the product catalog that is read through a memory mapping,
+ * so it can serve lookups right after startup and only pages in what is used.
+ * <p>
+ * Layout (big endian): a header, one fixed-width record per row (id, price, stock, the
+ * hashes of productID and productUUID and an offset/length pair per string field), two
+ * open-addressing hash indexes (by productID and by productUUID) holding row numbers + 1,
+ * and finally the UTF-8 string heap.
+ */
+public final class CatalogSnapshotFile {
+
+	private static final int MAGIC = 0x57534331; // "WSC1"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+
+	private static final int COL_PRODUCT_ID = 0;
+	private static final int COL_UUID = 1;
+	private static final int COL_NAME = 2;
+	private static final int COL_DESCRIPTION = 3;
+	private static final int COL_CURRENCY = 4;
+	private static final int COL_IMAGE_URL = 5;
+	private static final int STRING_COLUMNS = 6;
+
+	private static final int FIELD_ID = 0;
+	private static final int FIELD_PRICE = 8;
+	private static final int FIELD_STOCK = 16;
+	private static final int FIELD_CODE_HASH = 20;
+	private static final int FIELD_UUID_HASH = 24;
+	private static final int FIELD_STRINGS = 28;
+	private static final int RECORD_SIZE = FIELD_STRINGS + STRING_COLUMNS * 8;
+
+	private final MappedByteBuffer buffer;
+	private final int rowCount;
+	private final int indexSlots;
+	private final int codeIndexOffset;
+	private final int uuidIndexOffset;
+	private final int heapOffset;
+
+	private CatalogSnapshotFile(MappedByteBuffer buffer, int rowCount, int indexSlots) {
+		this.buffer = buffer;
+		this.rowCount = rowCount;
+		this.indexSlots = indexSlots;
+		this.codeIndexOffset = HEADER_SIZE + rowCount * RECORD_SIZE;
+		this.uuidIndexOffset = codeIndexOffset + indexSlots * 4;
+		this.heapOffset = uuidIndexOffset + indexSlots * 4;
+	}
+
+	/**
+	 * Maps an existing snapshot file read-only.
+	 */
+	public static CatalogSnapshotFile open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				throw new IOException("Not a catalog snapshot: " + file);
+			}
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not a catalog snapshot: " + file);
+			}
+			int rows = buffer.getInt(8);
+			int slots = buffer.getInt(12);
+			if (rows < 0 || slots < 0 || heapOffset(rows, slots) > size) {
+				throw new IOException("Truncated catalog snapshot: " + file);
+			}
+			return new CatalogSnapshotFile(buffer, rows, slots);
+		}
+	}
+
+	/**
+	 * Writes the products to a temporary file next to {@code target} and moves it into place.
+	 */
+	public static void write(Path target, List<ProductDTO> products) throws IOException {
+		try (Writer writer = writer(target)) {
+			for (ProductDTO product : products) {
+				writer.add(product);
+			}
+			writer.commit();
+		}
+	}
+
+	/**
+	 * Starts a snapshot that is written row by row; see {@link Writer}.
+	 */
+	public static Writer writer(Path target) throws IOException {
+		return new Writer(target);
+	}
+
+	public int size() {
+		return rowCount;
+	}
+
+	/**
+	 * Decodes one row; every call returns a new DTO.
+	 */
+	public ProductDTO get(int row) {
+		int record = record(row);
+		ProductDTO dto = new ProductDTO();
+		long id = buffer.getLong(record + FIELD_ID);
+		dto.setId(id != 0 ? id : null);
+		dto.setPrice(buffer.getDouble(record + FIELD_PRICE));
+		dto.setStock(buffer.getInt(record + FIELD_STOCK));
+		dto.setProductID(string(COL_PRODUCT_ID, row));
+		dto.setProductUUID(string(COL_UUID, row));
+		dto.setName(string(COL_NAME, row));
+		dto.setDescription(string(COL_DESCRIPTION, row));
+		dto.setCurrency(string(COL_CURRENCY, row));
+		dto.setImageUrl(string(COL_IMAGE_URL, row));
+		return dto;
+	}
+
+	public ProductDTO findByProductId(String productId) {
+		return find(codeIndexOffset, FIELD_CODE_HASH, COL_PRODUCT_ID, productId);
+	}
+
+	public ProductDTO findByUUID(String uuid) {
+		return find(uuidIndexOffset, FIELD_UUID_HASH, COL_UUID, uuid);
+	}
+
+	/**
+	 * Read-only list view that decodes rows on access.
+	 */
+	public List<ProductDTO> asList() {
+		return new Rows();
+	}
+
+	private ProductDTO find(int indexOffset, int hashField, int column, String key) {
+		if (key == null) {
+			return null;
+		}
+		int hash = key.hashCode();
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int mask = indexSlots - 1;
+		for (int slot = mix(hash) & mask, probes = 0; probes < indexSlots; slot = (slot + 1) & mask, probes++) {
+			int entry = buffer.getInt(indexOffset + slot * 4);
+			if (entry == 0) {
+				return null;
+			}
+			int row = entry - 1;
+			if (buffer.getInt(record(row) + hashField) == hash && stringEquals(column, row, keyBytes)) {
+				return get(row);
+			}
+		}
+		return null;
+	}
+
+	private int record(int row) {
+		return HEADER_SIZE + row * RECORD_SIZE;
+	}
+
+	private String string(int column, int row) {
+		int ref = record(row) + FIELD_STRINGS + column * 8;
+		int length = buffer.getInt(ref + 4);
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(heapOffset + buffer.getInt(ref), bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private boolean stringEquals(int column, int row, byte[] expected) {
+		int ref = record(row) + FIELD_STRINGS + column * 8;
+		if (buffer.getInt(ref + 4) != expected.length) {
+			return false;
+		}
+		byte[] bytes = new byte[expected.length];
+		buffer.get(heapOffset + buffer.getInt(ref), bytes);
+		return Arrays.equals(bytes, expected);
+	}
+
+	private static long heapOffset(long rows, long slots) {
+		return HEADER_SIZE + rows * RECORD_SIZE + slots * 8;
+	}
+
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Streams rows into a snapshot file without holding the catalog in memory: records and
+	 * strings are appended to two temporary files, and {@link #commit()} joins them behind a
+	 * header, builds the hash indexes inside the mapped result and moves it into place.
+	 * Closing without a commit discards everything.
+	 */
+	public static final class Writer implements Closeable {
+
+		private final Path target;
+		private final Path records;
+		private final Path heap;
+		private final DataOutputStream recordOut;
+		private final DataOutputStream heapOut;
+		private int rows;
+		private long heapSize;
+
+		private Writer(Path target) throws IOException {
+			this.target = target.toAbsolutePath();
+			Files.createDirectories(this.target.getParent());
+			this.records = Files.createTempFile(this.target.getParent(), "catalog-", ".rows");
+			this.heap = Files.createTempFile(this.target.getParent(), "catalog-", ".heap");
+			this.recordOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(records), 64 * 1024));
+			this.heapOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(heap), 64 * 1024));
+		}
+
+		public void add(ProductDTO p) throws IOException {
+			recordOut.writeLong(p.getId() != null ? p.getId() : 0L);
+			recordOut.writeDouble(p.getPrice());
+			recordOut.writeInt(p.getStock());
+			recordOut.writeInt(p.getProductID() != null ? p.getProductID().hashCode() : 0);
+			recordOut.writeInt(p.getProductUUID() != null ? p.getProductUUID().hashCode() : 0);
+			String[] values = { p.getProductID(), p.getProductUUID(), p.getName(), p.getDescription(), p.getCurrency(),
+					p.getImageUrl() };
+			for (String value : values) {
+				if (value == null) {
+					recordOut.writeInt(0);
+					recordOut.writeInt(-1);
+				} else {
+					byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+					recordOut.writeInt((int) heapSize);
+					recordOut.writeInt(bytes.length);
+					heapOut.write(bytes);
+					heapSize += bytes.length;
+				}
+			}
+			rows++;
+			if (heapOffset(rows, 0) + heapSize > Integer.MAX_VALUE) {
+				throw new IOException("Catalog too large for a snapshot file");
+			}
+		}
+
+		public void commit() throws IOException {
+			recordOut.close();
+			heapOut.close();
+			int slots = Math.max(2, Integer.highestOneBit(Math.max(1, rows * 2) - 1) << 1);
+			long indexOffset = HEADER_SIZE + (long) rows * RECORD_SIZE;
+			long heapOffset = heapOffset(rows, slots);
+			long size = heapOffset + heapSize;
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Catalog too large for a snapshot file");
+			}
+
+			Path temp = Files.createTempFile(target.getParent(), "catalog-", ".part");
+			try {
+				try (FileChannel out = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(rows)
+							.putInt(slots).flip();
+					while (header.hasRemaining()) {
+						out.write(header, HEADER_SIZE - header.remaining());
+					}
+					// grows the file to its full size first; the index region stays zero-filled
+					out.write(ByteBuffer.allocate(1), size - 1);
+					transfer(records, out, HEADER_SIZE);
+					transfer(heap, out, heapOffset);
+					MappedByteBuffer file = out.map(FileChannel.MapMode.READ_WRITE, 0, size);
+					fillIndex(file, (int) indexOffset, slots, FIELD_CODE_HASH, COL_PRODUCT_ID);
+					fillIndex(file, (int) (indexOffset + slots * 4L), slots, FIELD_UUID_HASH, COL_UUID);
+					file.force();
+				}
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				recordOut.close();
+				heapOut.close();
+			} finally {
+				Files.deleteIfExists(records);
+				Files.deleteIfExists(heap);
+			}
+		}
+
+		private void fillIndex(MappedByteBuffer file, int indexOffset, int slots, int hashField, int column) {
+			int mask = slots - 1;
+			for (int row = 0; row < rows; row++) {
+				int record = HEADER_SIZE + row * RECORD_SIZE;
+				if (file.getInt(record + FIELD_STRINGS + column * 8 + 4) < 0) {
+					continue;
+				}
+				int slot = mix(file.getInt(record + hashField)) & mask;
+				while (file.getInt(indexOffset + slot * 4) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				file.putInt(indexOffset + slot * 4, row + 1);
+			}
+		}
+
+		private static void transfer(Path source, FileChannel out, long position) throws IOException {
+			try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+				long size = in.size();
+				for (long done = 0; done < size;) {
+					long transferred = out.transferFrom(in, position + done, size - done);
+					if (transferred <= 0) {
+						throw new IOException("Could not copy " + source + " into the catalog snapshot");
+					}
+					done += transferred;
+				}
+			}
+		}
+	}
+
+	private final class Rows extends AbstractList<ProductDTO> implements RandomAccess {
+		@Override
+		public ProductDTO get(int index) {
+			if (index < 0 || index >= rowCount) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			return CatalogSnapshotFile.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return rowCount;
+		}
+	}
+}
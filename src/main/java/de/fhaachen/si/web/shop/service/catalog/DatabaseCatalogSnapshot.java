@@ -0,0 +1,97 @@
+package de.fhaachen.si.web.shop.service.catalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import de.fhaachen.si.web.shop.dto.ProductDTO;
+import de.fhaachen.si.web.shop.entity.Product;
+import de.fhaachen.si.web.shop.mapper.ProductMapper;
+import de.fhaachen.si.web.shop.repository.ProductBulkRepository;
+import de.fhaachen.si.web.shop.repository.ProductRepository;
+
+/**
+ * Keeps a {@link CatalogSnapshotFile} of the product table. It is written after every
+ * successful sync and used to re-seed an empty database at startup (e.g. with
+ * {@code ddl-auto=create-drop}), so the shop has a catalog before the first sync.
+ * Seeding runs on {@link ApplicationStartedEvent}, i.e. before the command line runners,
+ * so the demo products are only inserted when there is no snapshot to restore.
+ */
+@Service
+public class DatabaseCatalogSnapshot {
+
+	private static final int PAGE_SIZE = 1000;
+
+	@Autowired
+	protected ProductRepository productRepository;
+
+	@Autowired
+	protected ProductBulkRepository productBulkRepository;
+
+	@Autowired
+	protected ProductMapper productMapper;
+
+	@Value("${app.files.products.catalog-snapshot-path:}")
+	private String snapshotPath;
+
+	public void save() {
+		if (snapshotPath.isBlank()) {
+			return;
+		}
+		// pages go straight into the file, so only one page is in memory at a time
+		try (CatalogSnapshotFile.Writer writer = CatalogSnapshotFile.writer(Path.of(snapshotPath))) {
+			int count = 0;
+			Long lastId = 0L;
+			List<Product> page;
+			do {
+				page = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(PAGE_SIZE));
+				for (Product product : page) {
+					writer.add(productMapper.productToProductDTO(product));
+					lastId = product.getId();
+				}
+				count += page.size();
+			} while (page.size() == PAGE_SIZE);
+			writer.commit();
+			System.out.printf("Saved catalog snapshot with %d products%n", count);
+		} catch (IOException e) {
+			System.err.println("Could not write catalog snapshot: " + e.getMessage());
+		}
+	}
+
+	@EventListener(ApplicationStartedEvent.class)
+	public void seedIfEmpty() {
+		if (snapshotPath.isBlank() || !Files.exists(Path.of(snapshotPath)) || productRepository.count() > 0) {
+			return;
+		}
+		try {
+			CatalogSnapshotFile snapshot = CatalogSnapshotFile.open(Path.of(snapshotPath));
+			List<Product> chunk = new ArrayList<>(PAGE_SIZE);
+			for (ProductDTO dto : snapshot.asList()) {
+				if (dto.getId() == null) {
+					continue;
+				}
+				chunk.add(productMapper.productDTOToProduct(dto));
+				if (chunk.size() == PAGE_SIZE) {
+					productBulkRepository.insertAllWithIds(chunk);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				productBulkRepository.insertAllWithIds(chunk);
+			}
+			productBulkRepository.syncIdSequence();
+			System.out.printf("Seeded %d products from catalog snapshot%n", snapshot.size());
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Could not seed products from catalog snapshot: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package de.fhaachen.si.web.shop.service.catalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import de.fhaachen.si.web.shop.dto.ProductDTO;
+import de.fhaachen.si.web.shop.grpc.ProductClient;
+import de.fhaachen.si.web.shop.grpc.ProductResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory copy of the ERP product catalog, indexed by product code and UUID.
+ * The snapshot is refreshed in the background; reads never go to the ERP
+ * unless the snapshot is older than the configured staleness bound.
+ */
+@Service
+@Profile("erp")
+public class ErpProductCatalog {
+
+	@Autowired
+	protected ProductClient productClient;
+
+	@Value("${app.erp.catalog.refresh-ahead-ms:20000}")
+	private long refreshAheadMs;
+
+	@Value("${app.erp.catalog.max-staleness-ms:120000}")
+	private long maxStalenessMs;
+
+	@Value("${app.erp.catalog.miss-reload-min-age-ms:5000}")
+	private long missReloadMinAgeMs;
+
+	@Value("${app.erp.catalog.snapshot-path:}")
+	private String snapshotPath;
+
+	private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+	private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+	// a reload for asynchronous callers; everyone arriving while it runs waits for the same one
+	private final AtomicReference<CompletableFuture<Snapshot>> reloading = new AtomicReference<>();
+
+	// reloads block for up to the StreamProducts deadline, so they must not hold scheduler threads
+	private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(
+			Thread.ofPlatform().name("catalog-reload").daemon(true).factory());
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong refreshFailures = new AtomicLong();
+
+	/**
+	 * Warm start: maps the snapshot file written after the last refresh, so the catalog can be
+	 * served before the ERP has been asked.
+	 */
+	@PostConstruct
+	public void loadSnapshotFile() {
+		if (snapshotPath.isBlank() || !Files.exists(Path.of(snapshotPath))) {
+			return;
+		}
+		try {
+			Path file = Path.of(snapshotPath);
+			CatalogSnapshotFile mapped = CatalogSnapshotFile.open(file);
+			snapshot = new Snapshot(mapped, Files.getLastModifiedTime(file).toMillis());
+			System.out.println("[Catalog] Warm start with " + mapped.size() + " products from " + file);
+		} catch (IOException e) {
+			System.err.println("[Catalog] Could not read snapshot file: " + e.getMessage());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		reloadExecutor.shutdownNow();
+	}
+
+	public List<ProductDTO> getAllProducts() {
+		return current().products;
+	}
+
+	public ProductDTO findByProductCode(String productCode) {
+		return count(current().byCode.apply(productCode));
+	}
+
+	public CompletableFuture<List<ProductDTO>> getAllProductsAsync() {
+		return currentAsync().thenApply(s -> s.products);
+	}
+
+	public CompletableFuture<ProductDTO> findByProductCodeAsync(String productCode) {
+		return currentAsync().thenApply(s -> count(s.byCode.apply(productCode)));
+	}
+
+	/**
+	 * Keeps the product codes the catalog knows, resolved against one snapshot and counted once
+	 * in the hit and miss stats.
+	 */
+	public CompletableFuture<List<String>> filterKnownProductCodesAsync(Collection<String> productCodes) {
+		return currentAsync().thenApply(s -> {
+			List<String> known = productCodes.stream().distinct().filter(code -> s.byCode.apply(code) != null).toList();
+			hits.addAndGet(known.size());
+			misses.addAndGet(productCodes.stream().distinct().count() - known.size());
+			return known;
+		});
+	}
+
+	public ProductDTO findByUUID(String uuid) {
+		return count(current().byUuid.apply(uuid));
+	}
+
+	/**
+	 * Resolves many UUIDs against one snapshot. If some are unknown and the
+	 * snapshot is not brand new, the catalog is reloaded once and the misses
+	 * are looked up again, so the cost is at most one remote call.
+	 */
+	public Map<String, ProductDTO> findAllByUUIDs(Collection<String> uuids) {
+		Snapshot s = current();
+		Map<String, ProductDTO> found = new HashMap<>(uuids.size() * 2);
+		if (!resolve(s, uuids, found) && System.currentTimeMillis() - s.loadedAt > missReloadMinAgeMs) {
+			resolve(reload(s), uuids, found);
+		}
+		hits.addAndGet(found.size());
+		misses.addAndGet(uuids.stream().filter(uuid -> !found.containsKey(uuid)).count());
+		return found;
+	}
+
+	/**
+	 * Background refresh so that request threads normally find a fresh snapshot.
+	 */
+	@Scheduled(fixedDelayString = "${app.erp.catalog.refresh-interval-ms:30000}")
+	public void scheduledRefresh() {
+		if (refreshing.compareAndSet(false, true)) {
+			try {
+				refresh();
+			} catch (Exception e) {
+				System.err.println("[Catalog] Scheduled refresh failed: " + e.getMessage());
+			} finally {
+				refreshing.set(false);
+			}
+		}
+	}
+
+	/**
+	 * True if the snapshot is past its staleness bound, i.e. it is only still served because the
+	 * ERP could not be reached to reload it.
+	 */
+	public boolean isStale() {
+		Snapshot s = snapshot;
+		return s.loadedAt != 0 && System.currentTimeMillis() - s.loadedAt > maxStalenessMs;
+	}
+
+	public Map<String, Object> getStats() {
+		Snapshot s = snapshot;
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("size", s.products.size());
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("refreshes", refreshes.get());
+		stats.put("refreshFailures", refreshFailures.get());
+		stats.put("lastRefresh", s.loadedAt == 0 ? null : Instant.ofEpochMilli(s.loadedAt).toString());
+		stats.put("ageMs", s.loadedAt == 0 ? null : System.currentTimeMillis() - s.loadedAt);
+		stats.put("stale", isStale());
+		stats.put("warm", s.warm);
+		return stats;
+	}
+
+	private ProductDTO count(ProductDTO product) {
+		if (product != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return product;
+	}
+
+	/**
+	 * Adds every UUID known to the snapshot to {@code found}; returns true if all were found.
+	 */
+	private boolean resolve(Snapshot s, Collection<String> uuids, Map<String, ProductDTO> found) {
+		boolean complete = true;
+		for (String uuid : uuids) {
+			ProductDTO product = s.byUuid.apply(uuid);
+			if (product != null) {
+				found.put(uuid, product);
+			} else {
+				complete = false;
+			}
+		}
+		return complete;
+	}
+
+	private Snapshot current() {
+		Snapshot s = snapshot;
+		long age = System.currentTimeMillis() - s.loadedAt;
+		if (s.loadedAt == 0 || (age > maxStalenessMs && !s.warm)) {
+			return reload(s);
+		}
+		if (age > refreshAheadMs) {
+			refreshAsync();
+		}
+		return s;
+	}
+
+	/**
+	 * Like {@link #current()}, but a blocking reload runs on the reload executor instead of the
+	 * caller's thread.
+	 */
+	private CompletableFuture<Snapshot> currentAsync() {
+		Snapshot s = snapshot;
+		long age = System.currentTimeMillis() - s.loadedAt;
+		if (s.loadedAt == 0 || (age > maxStalenessMs && !s.warm)) {
+			return reloadAsync(s);
+		}
+		if (age > refreshAheadMs) {
+			refreshAsync();
+		}
+		return CompletableFuture.completedFuture(s);
+	}
+
+	private CompletableFuture<Snapshot> reloadAsync(Snapshot seen) {
+		while (true) {
+			CompletableFuture<Snapshot> inFlight = reloading.get();
+			if (inFlight != null) {
+				return inFlight;
+			}
+			CompletableFuture<Snapshot> started = new CompletableFuture<>();
+			if (reloading.compareAndSet(null, started)) {
+				reloadExecutor.execute(() -> {
+					try {
+						started.complete(reload(seen));
+					} catch (Throwable e) {
+						started.completeExceptionally(e);
+					} finally {
+						reloading.compareAndSet(started, null);
+					}
+				});
+				return started;
+			}
+		}
+	}
+
+	private synchronized Snapshot reload(Snapshot seen) {
+		if (snapshot != seen) {
+			// another thread reloaded while we were waiting for the lock
+			return snapshot;
+		}
+		try {
+			return refresh();
+		} catch (RuntimeException e) {
+			if (seen.loadedAt == 0) {
+				throw e;
+			}
+			System.err.println("[Catalog] Reload failed, serving stale snapshot: " + e.getMessage());
+			return seen;
+		}
+	}
+
+	private void refreshAsync() {
+		if (refreshing.compareAndSet(false, true)) {
+			reloadExecutor.execute(() -> {
+				try {
+					refresh();
+				} catch (Exception e) {
+					System.err.println("[Catalog] Refresh-ahead failed: " + e.getMessage());
+				} finally {
+					refreshing.set(false);
+				}
+			});
+		}
+	}
+
+	private synchronized Snapshot refresh() {
+		try {
+			List<ProductDTO> products;
+			try (Stream<ProductResponse> responses = productClient.streamProducts()) {
+				products = responses.map(ErpProductCatalog::toDTO).toList();
+			}
+			Snapshot fresh = new Snapshot(products, System.currentTimeMillis());
+			snapshot = fresh;
+			refreshes.incrementAndGet();
+			saveSnapshotFile(products);
+			return fresh;
+		} catch (RuntimeException e) {
+			refreshFailures.incrementAndGet();
+			throw e;
+		}
+	}
+
+	static ProductDTO toDTO(ProductResponse p) {
+		ProductDTO dto = new ProductDTO();
+		dto.setProductID(p.getProductCode());
+		dto.setProductUUID(p.getId());
+		dto.setName(p.getName());
+		dto.setDescription(p.getDescription());
+		dto.setPrice(p.getPrice());
+		dto.setCurrency(p.getCurrency());
+		dto.setStock(p.getStock());
+		return dto;
+	}
+
+	private void saveSnapshotFile(List<ProductDTO> products) {
+		if (snapshotPath.isBlank()) {
+			return;
+		}
+		try {
+			CatalogSnapshotFile.write(Path.of(snapshotPath), products);
+		} catch (IOException e) {
+			System.err.println("[Catalog] Could not write snapshot file: " + e.getMessage());
+		}
+	}
+
+	private static final class Snapshot {
+		static final Snapshot EMPTY = new Snapshot(List.of(), 0);
+
+		final List<ProductDTO> products;
+		final Function<String, ProductDTO> byCode;
+		final Function<String, ProductDTO> byUuid;
+		final long loadedAt;
+		// read from the snapshot file at startup; served until the first refresh succeeds
+		final boolean warm;
+
+		Snapshot(List<ProductDTO> products, long loadedAt) {
+			Map<String, ProductDTO> codes = new HashMap<>(products.size() * 2);
+			Map<String, ProductDTO> uuids = new HashMap<>(products.size() * 2);
+			for (ProductDTO p : products) {
+				if (p.getProductID() != null) {
+					codes.put(p.getProductID(), p);
+				}
+				if (p.getProductUUID() != null) {
+					uuids.put(p.getProductUUID(), p);
+				}
+			}
+			this.products = Collections.unmodifiableList(products);
+			this.byCode = codes::get;
+			this.byUuid = uuids::get;
+			this.loadedAt = loadedAt;
+			this.warm = false;
+		}
+
+		Snapshot(CatalogSnapshotFile file, long loadedAt) {
+			this.products = file.asList();
+			this.byCode = file::findByProductId;
+			this.byUuid = file::findByUUID;
+			this.loadedAt = loadedAt;
+			this.warm = true;
+		}
+	}
+}
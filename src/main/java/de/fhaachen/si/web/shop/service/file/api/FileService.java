@@ -4,7 +4,14 @@ import java.io.IOException;
 import java.nio.file.Path;
 
 public interface FileService {
+	/**
+	 * Downloads the file, or returns {@code null} if it is unchanged since the last import.
+	 */
 	public Path downloadFile(String endpoint, String username, String password) throws IOException;
 
-	public void importFromJson(Path csvPath) throws IOException;
+	public default void importFromJson(Path csvPath) throws IOException {
+		importFromJson(csvPath, ImportListener.NONE);
+	}
+
+	public void importFromJson(Path csvPath, ImportListener listener) throws IOException;
 }
@@ -0,0 +1,23 @@
+package de.fhaachen.si.web.shop.service.file.api;
+
+/**
+ * Receives progress from a running product import. Parsing and upserting alternate
+ * chunk by chunk, so a phase may be entered several times.
+ */
+public interface ImportListener {
+
+	ImportListener NONE = new ImportListener() {
+	};
+
+	default void phase(ImportPhase phase) {
+	}
+
+	default void rowsRead(int count) {
+	}
+
+	default void rowsWritten(int count) {
+	}
+
+	default void rowsDeleted(int count) {
+	}
+}
@@ -0,0 +1,5 @@
+package de.fhaachen.si.web.shop.service.file.api;
+
+public enum ImportPhase {
+	DOWNLOAD, PARSE, UPSERT, DELETE
+}
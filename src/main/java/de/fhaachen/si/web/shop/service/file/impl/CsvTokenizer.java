@@ -0,0 +1,102 @@
+package de.fhaachen.si.web.shop.service.file.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 tokenizer: fields may be quoted, quotes inside quoted fields
+ * are doubled, and quoted fields may contain commas and line breaks. Records are
+ * read one at a time, so memory use does not depend on the input size.
+ */
+public class CsvTokenizer {
+
+	private final Reader reader;
+	private int lookahead = -2;
+	private int line = 1;
+	private int recordLine;
+
+	public CsvTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the next record, or {@code null} at the end of the input.
+	 */
+	public List<String> next() throws IOException {
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		recordLine = line;
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean fieldStart = true;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					throw new IOException("Unterminated quoted field starting at line " + recordLine);
+				}
+				if (c == '"') {
+					if (peek() == '"') {
+						read();
+						field.append('"');
+					} else {
+						quoted = false;
+					}
+				} else {
+					if (c == '\n') {
+						line++;
+					}
+					field.append((char) c);
+				}
+			} else if (c == '"' && fieldStart) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+				fieldStart = true;
+				c = read();
+				continue;
+			} else if (c == '\r' || c == '\n' || c == -1) {
+				if (c == '\r' && peek() == '\n') {
+					read();
+				}
+				if (c != -1) {
+					line++;
+				}
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+			fieldStart = false;
+			c = read();
+		}
+	}
+
+	/**
+	 * Line number (1-based) at which the record last returned by {@link #next()} starts.
+	 */
+	public int getRecordLine() {
+		return recordLine;
+	}
+
+	private int read() throws IOException {
+		if (lookahead != -2) {
+			int c = lookahead;
+			lookahead = -2;
+			return c;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (lookahead == -2) {
+			lookahead = reader.read();
+		}
+		return lookahead;
+	}
+}
@@ -1,139 +1,375 @@
 package de.fhaachen.si.web.shop.service.file.impl;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Locale;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
 import de.fhaachen.si.web.shop.service.file.dto.ProductDTO;
 import de.fhaachen.si.web.shop.entity.Product;
-import de.fhaachen.si.web.shop.repository.ProductRepository;
+import de.fhaachen.si.web.shop.repository.ProductBulkRepository;
+import de.fhaachen.si.web.shop.service.StockCache;
+import de.fhaachen.si.web.shop.service.catalog.DatabaseCatalogSnapshot;
 import de.fhaachen.si.web.shop.service.file.api.FileService;
-import jakarta.transaction.Transactional;
+import de.fhaachen.si.web.shop.service.file.api.ImportListener;
+import de.fhaachen.si.web.shop.service.file.api.ImportPhase;
 
 @Service
 public class ProductFileService implements FileService {
 
 	@Autowired
-	protected ProductRepository productRepository;
+	protected ProductBulkRepository productBulkRepository;
+
+	@Autowired
+	protected StockCache stockCache;
+
+	@Autowired
+	protected DatabaseCatalogSnapshot catalogSnapshot;
 
 	private final ObjectMapper objectMapper = new ObjectMapper();
 
 	@Value("${app.files.products.path}")
 	private String filePath;
 
+	@Value("${app.files.products.import.chunk-size:1000}")
+	private int chunkSize;
+
+	@Value("${app.files.products.snapshots.retain-count:10}")
+	private int snapshotRetainCount;
+
+	@Value("${app.files.products.snapshots.max-age-hours:168}")
+	private long snapshotMaxAgeHours;
+
+	// the last successfully imported file, and the downloaded one waiting for its import
+	private volatile Fingerprint imported;
+	private volatile Fingerprint pending;
+
+	/**
+	 * Downloads the product file with a conditional GET. Returns {@code null} if the
+	 * file has not changed since the last successful import, either because the
+	 * server answered 304 or because the content hash is the same.
+	 * <p>
+	 * The body is streamed to a temporary file next to the target, so heap use does
+	 * not depend on the file size. It is then kept as a gzip snapshot named after its
+	 * content hash, so the same content is stored only once.
+	 */
 	@Override
 	public Path downloadFile(String endpoint, String username, String password) throws IOException {
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy - HH:mm:ss").withLocale(Locale.GERMANY);
-		Path path = Paths.get(filePath + " - " + LocalDateTime.now().format(formatter));
-		Files.createDirectories(path.getParent());
+		Path basePath = Paths.get(filePath);
+		Files.createDirectories(basePath.getParent());
+		Path tempFile = Files.createTempFile(basePath.getParent(), "products-", ".part");
 
 		WebClient webClient = WebClient.builder()
+				// sends Accept-Encoding: gzip and inflates the response on the fly
+				.clientConnector(new ReactorClientHttpConnector(HttpClient.create().compress(true)))
 				.defaultHeaders(headers -> headers.setBasicAuth(username, password))
 				.build();
 
-		byte[] fileBytes = webClient.get()
-				.uri(endpoint)
-				.retrieve()
-				.bodyToMono(byte[].class)
-				.onErrorMap(e -> new RuntimeException("Failed to download product file: " + e.getMessage(), e))
-				.block();
+		Fingerprint last = imported;
+		HttpHeaders responseHeaders;
+		try {
+			responseHeaders = webClient.get()
+					.uri(endpoint)
+					.headers(headers -> {
+						if (last != null && last.etag() != null) {
+							headers.setIfNoneMatch(last.etag());
+						}
+						if (last != null && last.lastModified() != null) {
+							headers.set(HttpHeaders.IF_MODIFIED_SINCE, last.lastModified());
+						}
+					})
+					.exchangeToMono(response -> {
+						if (response.statusCode() == HttpStatus.NOT_MODIFIED) {
+							return response.releaseBody().then(Mono.<HttpHeaders>empty());
+						}
+						if (response.statusCode().isError()) {
+							return response.createError();
+						}
+						return DataBufferUtils.write(response.bodyToFlux(DataBuffer.class), tempFile,
+										StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+								.then(Mono.just(response.headers().asHttpHeaders()));
+					})
+					.onErrorMap(e -> new RuntimeException("Failed to download product file: " + e.getMessage(), e))
+					.block();
+		} catch (RuntimeException e) {
+			Files.deleteIfExists(tempFile);
+			throw e;
+		}
 
-		if (fileBytes == null || fileBytes.length == 0) {
+		if (responseHeaders == null) {
+			Files.deleteIfExists(tempFile);
+			System.out.println("Product file not modified since last import.");
+			return null;
+		}
+
+		if (Files.size(tempFile) == 0) {
+			Files.deleteIfExists(tempFile);
 			throw new RuntimeException("Downloaded file is empty");
 		}
 
-		Files.write(path, fileBytes);
+		String hash = sha256(tempFile);
+		if (last != null && hash.equals(last.hash())) {
+			Files.deleteIfExists(tempFile);
+			System.out.println("Product file content unchanged since last import.");
+			return null;
+		}
+
+		Path path = storeSnapshot(basePath, tempFile, hash);
 		System.out.println("File downloaded and saved to: " + path.toAbsolutePath());
 
+		pending = new Fingerprint(path, responseHeaders.getETag(), responseHeaders.getFirst(HttpHeaders.LAST_MODIFIED),
+				hash);
+		pruneSnapshots(basePath, path);
 		return path;
 	}
 
-	@Transactional
-	public void importFromJson(Path filePath) throws IOException {
-		List<ProductDTO> remoteProducts = readProductsFromFile(filePath);
-		insertOrUpdateProducts(remoteProducts);
-		deleteMissingProducts(remoteProducts);
+	/**
+	 * Imports the file chunk by chunk, committing each chunk on its own; only the
+	 * product IDs of the feed are kept in memory to find the products that have to
+	 * be deleted afterwards. If the import fails half-way nothing is deleted.
+	 */
+	@Override
+	public void importFromJson(Path filePath, ImportListener listener) throws IOException {
+		Set<String> remoteProductIds = new HashSet<>();
+		listener.phase(ImportPhase.PARSE);
+		readProductsFromFile(filePath, chunk -> {
+			listener.rowsRead(chunk.size());
+			listener.phase(ImportPhase.UPSERT);
+			listener.rowsWritten(insertOrUpdateProducts(chunk));
+			chunk.forEach(dto -> {
+				if (dto.getProductID() != null) {
+					remoteProductIds.add(dto.getProductID());
+				}
+			});
+			listener.phase(ImportPhase.PARSE);
+		});
+		listener.phase(ImportPhase.DELETE);
+		listener.rowsDeleted(deleteMissingProducts(remoteProductIds));
+
+		// only a completed import may short-circuit the next download
+		Fingerprint downloaded = pending;
+		if (downloaded != null && downloaded.path().equals(filePath)) {
+			imported = downloaded;
+			pending = null;
+		}
+		catalogSnapshot.save();
 	}
 
 	/**
-	 * Reads the remote JSON file into a list of ProductDTOs.
+	 * Reads the remote JSON array one product at a time and hands them to the
+	 * consumer in chunks of {@code app.files.products.import.chunk-size}.
 	 */
-	public List<ProductDTO> readProductsFromFile(Path filePath) throws IOException {
-		byte[] jsonData = Files.readAllBytes(filePath);
-		List<ProductDTO> products = objectMapper.readValue(jsonData, new TypeReference<List<ProductDTO>>() {
-		});
-		System.out.printf("Read %d products from JSON file%n", products.size());
-		return products;
+	public void readProductsFromFile(Path filePath, Consumer<List<ProductDTO>> chunkConsumer) throws IOException {
+		int total = 0;
+		try (InputStream in = openSnapshot(filePath); JsonParser parser = objectMapper.createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new IOException("Expected a JSON array of products in " + filePath);
+			}
+			List<ProductDTO> chunk = new ArrayList<>(chunkSize);
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				chunk.add(parser.readValueAs(ProductDTO.class));
+				if (chunk.size() == chunkSize) {
+					chunkConsumer.accept(chunk);
+					total += chunk.size();
+					chunk = new ArrayList<>(chunkSize);
+				}
+			}
+			if (!chunk.isEmpty()) {
+				chunkConsumer.accept(chunk);
+				total += chunk.size();
+			}
+		}
+		System.out.printf("Read %d products from JSON file%n", total);
 	}
 
 	/**
-	 * Inserts new products and updates existing ones.
+	 * Inserts new products and updates existing ones with one batched upsert.
+	 * Rows whose fields are unchanged are not written. Entries without a
+	 * productID cannot be matched and are skipped.
+	 *
+	 * @return the number of rows inserted or changed
 	 */
-	@Transactional
-	public void insertOrUpdateProducts(List<ProductDTO> productDtos) {
+	public int insertOrUpdateProducts(List<ProductDTO> productDtos) {
+		List<Product> products = new ArrayList<>(productDtos.size());
 		for (ProductDTO dto : productDtos) {
-			double priceValue = parsePrice(dto.getPrice());
-
-			Product product = productRepository.findByProductID(dto.getProductID()).orElseGet(() -> {
-				Product p = new Product();
-				p.setProductID(dto.getProductID());
-				return p;
-			});
-
+			if (dto.getProductID() == null) {
+				continue;
+			}
+			Product product = new Product();
+			product.setProductID(dto.getProductID());
 			product.setName(dto.getName());
 			product.setDescription(dto.getDescription());
-			product.setPrice(priceValue);
+			product.setPrice(parsePrice(dto.getPrice()));
 			product.setStock(dto.getStock());
-
-			productRepository.save(product);
+			products.add(product);
 		}
 
-		System.out.printf("Inserted/Updated %d products%n", productDtos.size());
+		List<String> changed = productBulkRepository.upsertAll(products);
+		changed.forEach(stockCache::invalidate);
+
+		System.out.printf("Inserted/Updated %d of %d products%n", changed.size(), products.size());
+		return changed.size();
 	}
 
 	/**
 	 * Deletes products that exist in DB but are not present in the new remote list.
 	 * Keeps all local-only products (those without a productID).
+	 *
+	 * @return the number of deleted products
 	 */
-	@Transactional
-	public void deleteMissingProducts(List<ProductDTO> remoteProductDtos) {
-		Set<String> remoteProductIds = remoteProductDtos.stream().map(ProductDTO::getProductID).filter(Objects::nonNull)
-				.collect(Collectors.toSet());
-
-		List<Product> productsToDelete = productRepository.findAll().stream()
-				.filter(p -> p.getProductID() != null && !remoteProductIds.contains(p.getProductID()))
-				.collect(Collectors.toList());
-
-		if (!productsToDelete.isEmpty()) {
-			productRepository.deleteAll(productsToDelete);
-			System.out.printf("Deleted %d outdated products%n", productsToDelete.size());
+	public int deleteMissingProducts(Set<String> remoteProductIds) {
+		List<String> deleted = productBulkRepository.deleteAllNotIn(remoteProductIds);
+		deleted.forEach(stockCache::invalidate);
+
+		if (!deleted.isEmpty()) {
+			System.out.printf("Deleted %d outdated products%n", deleted.size());
 		} else {
 			System.out.println("No products to delete.");
 		}
+		return deleted.size();
 	}
 
 	/**
 	 * Parses the price string, stripping currency.
 	 */
-	private double parsePrice(String priceStr) {
+	static double parsePrice(String priceStr) {
 		if (priceStr == null)
 			return 0.0;
 		return Double.parseDouble(priceStr.replace("EUR", "").trim());
 	}
+
+	/**
+	 * Compresses the downloaded file into {@code <name>.<sha256>.gz}. If a snapshot with the
+	 * same content already exists it is reused and only its timestamp is refreshed.
+	 */
+	private Path storeSnapshot(Path basePath, Path download, String hash) throws IOException {
+		Path snapshot = basePath.resolveSibling(basePath.getFileName() + "." + hash + ".gz");
+		try {
+			if (Files.exists(snapshot)) {
+				Files.setLastModifiedTime(snapshot, FileTime.from(Instant.now()));
+				return snapshot;
+			}
+			Path compressed = Files.createTempFile(basePath.getParent(), "products-", ".gz.part");
+			try (InputStream in = Files.newInputStream(download);
+					OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), 64 * 1024)) {
+				in.transferTo(out);
+			} catch (IOException e) {
+				Files.deleteIfExists(compressed);
+				throw e;
+			}
+			Files.move(compressed, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			return snapshot;
+		} finally {
+			Files.deleteIfExists(download);
+		}
+	}
+
+	/**
+	 * Deletes snapshots beyond the configured count or age. The current snapshot and the
+	 * one of the last successful import are always kept.
+	 */
+	private void pruneSnapshots(Path basePath, Path current) {
+		String prefix = basePath.getFileName().toString();
+		Fingerprint last = imported;
+		Instant cutoff = Instant.now().minus(Duration.ofHours(snapshotMaxAgeHours));
+		List<Path> snapshots;
+		try (Stream<Path> files = Files.list(basePath.getParent())) {
+			snapshots = files.filter(f -> f.getFileName().toString().startsWith(prefix)
+					&& !f.getFileName().toString().endsWith(".part"))
+					.sorted(Comparator.comparing(ProductFileService::lastModified).reversed())
+					.toList();
+		} catch (IOException e) {
+			System.err.println("Could not list product snapshots: " + e.getMessage());
+			return;
+		}
+		for (int i = 0; i < snapshots.size(); i++) {
+			Path snapshot = snapshots.get(i);
+			if (snapshot.equals(current) || (last != null && snapshot.equals(last.path()))) {
+				continue;
+			}
+			if (i >= snapshotRetainCount || lastModified(snapshot).isBefore(cutoff)) {
+				try {
+					Files.deleteIfExists(snapshot);
+				} catch (IOException e) {
+					System.err.println("Could not delete product snapshot " + snapshot + ": " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private static Instant lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toInstant();
+		} catch (IOException e) {
+			return Instant.EPOCH;
+		}
+	}
+
+	/**
+	 * Opens a snapshot for reading, decompressing gzip snapshots on the fly.
+	 */
+	private static InputStream openSnapshot(Path file) throws IOException {
+		InputStream in = Files.newInputStream(file);
+		if (file.getFileName().toString().endsWith(".gz")) {
+			return new GZIPInputStream(in, 64 * 1024);
+		}
+		return new BufferedInputStream(in, 64 * 1024);
+	}
+
+	private static String sha256(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * What identifies a downloaded product file: the HTTP validators and the content hash.
+	 */
+	private record Fingerprint(Path path, String etag, String lastModified, String hash) {
+	}
 }
@@ -0,0 +1,200 @@
+package de.fhaachen.si.web.shop.service.impl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.fhaachen.si.web.shop.dto.OrderBatchResultDTO;
+import de.fhaachen.si.web.shop.dto.OrderDTO;
+import de.fhaachen.si.web.shop.entity.OrderOutboxEntry;
+import de.fhaachen.si.web.shop.entity.OutboxStatus;
+import de.fhaachen.si.web.shop.grpc.CircuitOpenException;
+import de.fhaachen.si.web.shop.repository.OrderOutboxRepository;
+import de.fhaachen.si.web.shop.service.api.OrderOutcomeUnknownException;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * Drains the order outbox into the ERP. Due entries are claimed in batches and sent over one
+ * CreateOrders stream per batch. An entry fails when its order is rejected or the ERP refuses the
+ * call without processing it. While the ERP is unreachable or does not answer in time, the batch
+ * is retried with capped exponential backoff and jitter for as long as it takes; other errors are
+ * retried up to {@code app.orders.outbox.max-attempts}. The ERP recognizes resent orders by their
+ * client reference. An entry whose lease keeps running out (e.g. because it crashes the
+ * dispatcher) is given up after {@code app.orders.outbox.max-lease-expiries}.
+ */
+@Component
+@Profile("erp")
+public class OrderOutboxDispatcher {
+
+	@Autowired
+	protected OrderOutboxRepository outboxRepository;
+
+	@Autowired
+	protected OrderServiceErp orderService;
+
+	@Autowired
+	protected ObjectMapper objectMapper;
+
+	@Value("${app.orders.outbox.batch-size:100}")
+	private int batchSize;
+
+	// an entry whose dispatcher died mid-send is claimed again after the lease
+	@Value("${app.orders.outbox.lease-ms:60000}")
+	private long leaseMs;
+
+	@Value("${app.orders.outbox.max-lease-expiries:3}")
+	private int maxLeaseExpiries;
+
+	// for failures other than an unreachable or slow ERP
+	@Value("${app.orders.outbox.max-attempts:10}")
+	private int maxAttempts;
+
+	@Value("${app.orders.outbox.backoff.initial-ms:1000}")
+	private long initialBackoffMs;
+
+	@Value("${app.orders.outbox.backoff.max-ms:300000}")
+	private long maxBackoffMs;
+
+	@Value("${app.orders.outbox.retention-hours:72}")
+	private long retentionHours;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	@Scheduled(fixedDelayString = "${app.orders.outbox.poll-interval-ms:500}")
+	public void dispatch() {
+		List<OrderOutboxEntry> batch;
+		do {
+			batch = outboxRepository.claimDue(batchSize, LocalDateTime.now().plusNanos(leaseMs * 1_000_000));
+			if (!batch.isEmpty()) {
+				send(batch);
+			}
+		} while (batch.size() == batchSize);
+	}
+
+	@Scheduled(fixedDelayString = "${app.orders.outbox.purge-interval-ms:3600000}")
+	public void purgeSentEntries() {
+		int purged = outboxRepository.purgeSentBefore(LocalDateTime.now().minusHours(retentionHours));
+		if (purged > 0) {
+			System.out.printf("Purged %d sent outbox entries%n", purged);
+		}
+	}
+
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("sent", sent.get());
+		stats.put("retried", retried.get());
+		stats.put("failed", failed.get());
+		stats.put("entries", outboxRepository.countByStatus());
+		return stats;
+	}
+
+	private void send(List<OrderOutboxEntry> batch) {
+		List<OrderOutboxEntry> entries = new ArrayList<>(batch.size());
+		List<OrderDTO> orders = new ArrayList<>(batch.size());
+		List<OrderOutboxEntry> rejected = new ArrayList<>();
+		for (OrderOutboxEntry entry : batch) {
+			if (entry.getLeaseExpiries() >= maxLeaseExpiries) {
+				rejected.add(fail(entry, "Giving up after the lease expired " + entry.getLeaseExpiries()
+						+ " times: " + entry.getLastError()));
+				continue;
+			}
+			try {
+				OrderDTO order = objectMapper.readValue(entry.getPayload(), OrderDTO.class);
+				// the same reference on every attempt lets the ERP recognize a resent order
+				order.setIdempotencyKey(OrderServiceErp.OUTBOX_REFERENCE_PREFIX + entry.getId());
+				orders.add(order);
+				entries.add(entry);
+			} catch (JsonProcessingException e) {
+				rejected.add(fail(entry, "Unreadable payload: " + e.getOriginalMessage()));
+			}
+		}
+
+		List<OrderBatchResultDTO> results;
+		try {
+			results = orders.isEmpty() ? List.of() : orderService.createOrdersFromDTOs(orders, null);
+		} catch (RuntimeException e) {
+			System.err.println("[Outbox] Sending " + orders.size() + " orders failed: " + e.getMessage());
+			boolean refused = e instanceof StatusRuntimeException
+					&& OrderServiceErp.NOTHING_CREATED.contains(Status.fromThrowable(e).getCode());
+			boolean transientFailure = isTransient(e);
+			for (OrderOutboxEntry entry : entries) {
+				if (refused) {
+					rejected.add(fail(entry, "Refused by ERP: " + e.getMessage()));
+				} else if (!transientFailure && entry.getAttempts() + 1 >= maxAttempts) {
+					entry.setAttempts(entry.getAttempts() + 1);
+					rejected.add(fail(entry, "Giving up after " + entry.getAttempts() + " attempts: " + e.getMessage()));
+				} else {
+					rejected.add(retryLater(entry, e.getMessage()));
+				}
+			}
+			outboxRepository.reschedule(rejected);
+			return;
+		}
+
+		Map<Long, String> created = new HashMap<>();
+		for (int i = 0; i < results.size(); i++) {
+			OrderBatchResultDTO result = results.get(i);
+			if (OrderBatchResultDTO.CREATED.equals(result.getStatus())) {
+				created.put(entries.get(i).getId(), result.getOrderId());
+			} else if (OrderBatchResultDTO.UNKNOWN.equals(result.getStatus())) {
+				rejected.add(retryLater(entries.get(i), result.getError()));
+			} else {
+				rejected.add(fail(entries.get(i), "Rejected: " + result.getError()));
+			}
+		}
+		outboxRepository.markSent(created);
+		outboxRepository.reschedule(rejected);
+		sent.addAndGet(created.size());
+		System.out.printf("[Outbox] Sent %d orders, %d not sent%n", created.size(), rejected.size());
+	}
+
+	/**
+	 * The ERP could not be reached or did not answer in time; worth waiting for however long it takes.
+	 */
+	private static boolean isTransient(RuntimeException e) {
+		Throwable cause = e instanceof OrderOutcomeUnknownException && e.getCause() != null ? e.getCause() : e;
+		if (cause instanceof CircuitOpenException) {
+			return true;
+		}
+		Status.Code code = Status.fromThrowable(cause).getCode();
+		return code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED
+				|| code == Status.Code.CANCELLED;
+	}
+
+	private OrderOutboxEntry retryLater(OrderOutboxEntry entry, String error) {
+		int attempts = entry.getAttempts() + 1;
+		// exponential backoff with jitter, so entries that failed together do not retry together
+		long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 30));
+		backoffMs = backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+		entry.setAttempts(attempts);
+		entry.setStatus(OutboxStatus.PENDING);
+		entry.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMs * 1_000_000));
+		entry.setLastError(error);
+		retried.incrementAndGet();
+		return entry;
+	}
+
+	private OrderOutboxEntry fail(OrderOutboxEntry entry, String error) {
+		entry.setStatus(OutboxStatus.FAILED);
+		entry.setLastError(error);
+		failed.incrementAndGet();
+		return entry;
+	}
+}
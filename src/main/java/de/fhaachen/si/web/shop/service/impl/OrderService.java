@@ -1,12 +1,29 @@
 package de.fhaachen.si.web.shop.service.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import de.fhaachen.si.web.shop.dto.OrderBatchResultDTO;
 import de.fhaachen.si.web.shop.dto.OrderDTO;
+import de.fhaachen.si.web.shop.dto.OrderPageDTO;
 import de.fhaachen.si.web.shop.entity.Customer;
 import de.fhaachen.si.web.shop.entity.Order;
 import de.fhaachen.si.web.shop.entity.OrderItem;
@@ -14,9 +31,13 @@ import de.fhaachen.si.web.shop.entity.OrderStatus;
 import de.fhaachen.si.web.shop.entity.Product;
 import de.fhaachen.si.web.shop.mapper.OrderMapper;
 import de.fhaachen.si.web.shop.repository.CustomerRepository;
+import de.fhaachen.si.web.shop.repository.OrderIdempotencyRepository;
 import de.fhaachen.si.web.shop.repository.OrderRepository;
 import de.fhaachen.si.web.shop.repository.ProductRepository;
+import de.fhaachen.si.web.shop.service.StockCache;
 import de.fhaachen.si.web.shop.service.api.IOrderService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 
 @Service
@@ -35,6 +56,20 @@ public class OrderService implements IOrderService{
 	@Autowired
 	protected OrderMapper orderMapper;
 
+	@Autowired
+	protected StockCache stockCache;
+
+	@Autowired
+	protected OrderIdempotencyRepository idempotencyRepository;
+
+	@PersistenceContext
+	protected EntityManager entityManager;
+
+	private static final int STREAM_PAGE_SIZE = 500;
+
+	// sorts after every real order, so the first page starts at the newest one
+	private static final LocalDateTime FIRST_PAGE_CURSOR = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     @Transactional
     public OrderDTO createOrder(Long customerId, List<OrderItem> items) {
         Customer customer = customerRepository.findById(customerId)
@@ -43,9 +78,12 @@ public class OrderService implements IOrderService{
         Order order = new Order();
         order.setCustomer(customer);
 
+        Map<Long, Product> products = findProducts(items.stream().map(item -> item.getProduct().getId()).toList());
         for (OrderItem item : items) {
-            Product product = productRepository.findById(item.getProduct().getId())
-                    .orElseThrow(() -> new RuntimeException("Product not found"));
+            Product product = products.get(item.getProduct().getId());
+            if (product == null) {
+                throw new RuntimeException("Product not found");
+            }
             item.setOrder(order);
             item.setProduct(product);
         }
@@ -64,45 +102,203 @@ public class OrderService implements IOrderService{
         Customer customer = customerRepository.findById(Long.parseLong(orderDTO.getCustomerId()))
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
         order.setCustomer(customer);
+        attachProducts(order, findProducts(productIds(order)));
 
-        for (OrderItem item : order.getOrderItems()) {
-            String rawProductId = item.getProduct() != null ? item.getProduct().getId().toString() : null;
-            Product product;
+        Order saved = orderRepository.save(order);
+        saved.getOrderItems().forEach(item -> stockCache.invalidate(item.getProduct().getProductID()));
+        return orderMapper.orderToOrderDTO(saved);
+    }
 
-            if (rawProductId == null) {
-                throw new RuntimeException("Product ID missing for one of the order items.");
+    /**
+     * Loads the customers and products of all orders with one query each and saves the valid
+     * orders together, so their inserts go out in JDBC batches. The idempotency keys are
+     * completed in the same transaction, so a key never outlives or misses its order.
+     */
+    @Transactional
+    @Override
+    public List<OrderBatchResultDTO> createOrdersFromDTOs(List<OrderDTO> orderDTOs, String keyOwner) {
+        OrderBatchResultDTO[] results = new OrderBatchResultDTO[orderDTOs.size()];
+        Order[] orders = new Order[orderDTOs.size()];
+        Set<Long> customerIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (int i = 0; i < orderDTOs.size(); i++) {
+            try {
+                Order order = orderMapper.orderDTOToOrder(orderDTOs.get(i));
+                customerIds.add(Long.valueOf(orderDTOs.get(i).getCustomerId()));
+                productIds.addAll(productIds(order));
+                orders[i] = order;
+            } catch (NumberFormatException e) {
+                results[i] = OrderBatchResultDTO.failed("Invalid customer id: " + orderDTOs.get(i).getCustomerId());
+            } catch (RuntimeException e) {
+                results[i] = OrderBatchResultDTO.failed(e.getMessage());
             }
+        }
 
+        Map<Long, Customer> customers = new HashMap<>();
+        customerRepository.findAllById(customerIds).forEach(customer -> customers.put(customer.getId(), customer));
+        Map<Long, Product> products = findProducts(productIds);
+
+        List<Order> valid = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < orders.length; i++) {
+            if (orders[i] == null) {
+                continue;
+            }
+            Customer customer = customers.get(Long.valueOf(orderDTOs.get(i).getCustomerId()));
+            if (customer == null) {
+                results[i] = OrderBatchResultDTO.failed("Customer not found");
+                continue;
+            }
             try {
-                Long localId = Long.parseLong(rawProductId);
-                product = productRepository.findById(localId)
-                        .orElseThrow(() -> new RuntimeException("Local product not found with id " + localId));
-            } catch (NumberFormatException ex) {
-                product = new Product();
-                product.setProductID(rawProductId);
-                product.setName("ERP Product " + rawProductId);
-                product.setPrice(0.0);
-                product.setStock(0);
+                orders[i].setCustomer(customer);
+                attachProducts(orders[i], products);
+                valid.add(orders[i]);
+                positions.add(i);
+            } catch (RuntimeException e) {
+                results[i] = OrderBatchResultDTO.failed(e.getMessage());
             }
+        }
 
+        List<Order> saved = orderRepository.saveAll(valid);
+        Map<String, String> completedKeys = new HashMap<>();
+        for (int j = 0; j < saved.size(); j++) {
+            Order order = saved.get(j);
+            order.getOrderItems().forEach(item -> stockCache.invalidate(item.getProduct().getProductID()));
+            results[positions.get(j)] = OrderBatchResultDTO.created(orderMapper.orderToOrderDTO(order));
+            String key = orderDTOs.get(positions.get(j)).getIdempotencyKey();
+            if (keyOwner != null && key != null) {
+                completedKeys.put(key, order.getId().toString());
+            }
+        }
+        idempotencyRepository.complete(keyOwner, completedKeys);
+        return Arrays.asList(results);
+    }
+
+    private static List<Long> productIds(Order order) {
+        if (order.getOrderItems() == null || order.getOrderItems().isEmpty()) {
+            throw new RuntimeException("Order has no items.");
+        }
+        List<Long> ids = new ArrayList<>();
+        for (OrderItem item : order.getOrderItems()) {
+            if (item.getProduct() == null || item.getProduct().getId() == null) {
+                throw new RuntimeException("Product ID missing for one of the order items.");
+            }
+            ids.add(item.getProduct().getId());
+        }
+        return ids;
+    }
+
+    private static void attachProducts(Order order, Map<Long, Product> products) {
+        for (OrderItem item : order.getOrderItems()) {
+            Long productId = item.getProduct().getId();
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new RuntimeException("Local product not found with id " + productId);
+            }
             item.setOrder(order);
             item.setProduct(product);
             item.setPrice(product.getPrice());
         }
-
         order.calculateTotal();
-        return orderMapper.orderToOrderDTO(orderRepository.save(order));
     }
 
 
-    public List<OrderDTO> getOrdersForCustomer(Long customerId) {
+    /**
+     * Loads all products of an order with one query instead of one per line item.
+     */
+    private Map<Long, Product> findProducts(Collection<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(new HashSet<>(ids))) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+
+    /**
+     * Pages by order id: the token is the id of the last order on the previous page.
+     */
+    @Override
+    public OrderPageDTO getOrdersForCustomer(Long customerId, int pageSize, String pageToken) {
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
-        return orderRepository.findByCustomer(customer).stream().map(orderMapper::orderToOrderDTO).toList();
+        Long lastId = 0L;
+        if (pageToken != null && !pageToken.isBlank()) {
+            try {
+                lastId = Long.valueOf(pageToken);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken);
+            }
+        }
+        // one extra row tells whether there is a next page
+        List<Long> ids = orderRepository.findByCustomerAndIdGreaterThanOrderByIdAsc(customer, lastId,
+                Limit.of(pageSize + 1)).stream().map(Order::getId).toList();
+        String nextPageToken = null;
+        if (ids.size() > pageSize) {
+            ids = ids.subList(0, pageSize);
+            nextPageToken = ids.get(pageSize - 1).toString();
+        }
+        return new OrderPageDTO(loadOrders(ids).stream().map(orderMapper::orderToOrderDTO).toList(), nextPageToken);
+    }
+
+    /**
+     * Keyset pagination on (createdAt, id): the token encodes the last order of the previous
+     * page, so every page costs the same no matter how deep it is. Each page takes two queries,
+     * one for the ids and one that fetch-joins the orders with their items and products.
+     */
+    @Override
+    public OrderPageDTO getOrders(OrderStatus status, Long customerId, int pageSize, String pageToken) {
+        LocalDateTime createdAt = FIRST_PAGE_CURSOR;
+        Long id = Long.MAX_VALUE;
+        if (pageToken != null && !pageToken.isBlank()) {
+            try {
+                String[] cursor = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8).split("\\|");
+                createdAt = LocalDateTime.parse(cursor[0]);
+                id = Long.valueOf(cursor[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page token: " + pageToken);
+            }
+        }
+
+        List<Long> ids = orderRepository.findIdsBefore(status, customerId, createdAt, id, Limit.of(pageSize + 1));
+        boolean hasMore = ids.size() > pageSize;
+        List<Order> orders = loadOrders(hasMore ? ids.subList(0, pageSize) : ids);
+        String nextPageToken = null;
+        if (hasMore) {
+            Order last = orders.get(orders.size() - 1);
+            nextPageToken = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((last.getCreatedAt() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new OrderPageDTO(orders.stream().map(orderMapper::orderToOrderDTO).toList(), nextPageToken);
     }
 
-    public List<OrderDTO> getAllOrders() {
-        return orderRepository.findAll().stream().map(orderMapper::orderToOrderDTO).toList();
+    /**
+     * Loads the orders with everything the mapper touches, in the order of the given ids.
+     */
+    private List<Order> loadOrders(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Order> byId = new HashMap<>();
+        for (Order order : orderRepository.findWithItemsByIdIn(ids)) {
+            byId.put(order.getId(), order);
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    @Transactional
+    @Override
+    public void forEachOrder(Consumer<OrderDTO> consumer) {
+        Long lastId = 0L;
+        List<Order> page;
+        do {
+            page = orderRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(STREAM_PAGE_SIZE));
+            for (Order order : page) {
+                consumer.accept(orderMapper.orderToOrderDTO(order));
+                lastId = order.getId();
+            }
+            // keep the persistence context from growing with every page
+            entityManager.clear();
+        } while (page.size() == STREAM_PAGE_SIZE);
     }
 
     public OrderDTO updateOrderStatus(Long orderId, OrderStatus status) {
@@ -122,6 +318,36 @@ public class OrderService implements IOrderService{
 		return null;
 	}
 
+	@Override
+	public Optional<Map<String, Object>> findOutboxStatus(String reference, String userEmail) {
+		// local orders are created right away, so there is no outbox
+		return Optional.empty();
+	}
+
+	// Local orders live in the database, so the async variants complete on the caller's thread.
+
+	@Transactional
+	@Override
+	public CompletableFuture<OrderDTO> createOrderFromDTOAsync(OrderDTO orderDTO) {
+		return CompletableFuture.completedFuture(createOrderFromDTO(orderDTO));
+	}
+
+	@Override
+	public CompletableFuture<OrderPageDTO> getOrdersForCustomerAsync(Long customerId, int pageSize, String pageToken) {
+		return CompletableFuture.completedFuture(getOrdersForCustomer(customerId, pageSize, pageToken));
+	}
+
+	@Override
+	public CompletableFuture<OrderPageDTO> getOrdersAsync(OrderStatus status, Long customerId, int pageSize,
+			String pageToken) {
+		return CompletableFuture.completedFuture(getOrders(status, customerId, pageSize, pageToken));
+	}
+
+	@Override
+	public CompletableFuture<OrderDTO> updateOrderStatusAsync(Long orderId, OrderStatus status) {
+		return CompletableFuture.completedFuture(updateOrderStatus(orderId, status));
+	}
+
 	@Override
 	public OrderDTO getOrderById(Long id) {
 		Order order = orderRepository.findById(id).orElse(null);
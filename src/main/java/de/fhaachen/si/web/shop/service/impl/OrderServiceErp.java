@@ -1,29 +1,62 @@
 package de.fhaachen.si.web.shop.service.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.fhaachen.si.web.shop.dto.OrderBatchResultDTO;
 import de.fhaachen.si.web.shop.dto.OrderDTO;
 import de.fhaachen.si.web.shop.dto.OrderItemDTO;
+import de.fhaachen.si.web.shop.dto.OrderPageDTO;
 import de.fhaachen.si.web.shop.dto.ProductDTO;
+import de.fhaachen.si.web.shop.entity.Customer;
 import de.fhaachen.si.web.shop.entity.OrderStatus;
+import de.fhaachen.si.web.shop.entity.Role;
+import de.fhaachen.si.web.shop.entity.User;
+import de.fhaachen.si.web.shop.grpc.CircuitOpenException;
 import de.fhaachen.si.web.shop.grpc.OrderClient;
 import de.fhaachen.si.web.shop.grpc.OrderItem;
+import de.fhaachen.si.web.shop.grpc.OrderPageResponse;
 import de.fhaachen.si.web.shop.grpc.OrderRequest;
 import de.fhaachen.si.web.shop.grpc.OrderResponse;
 import de.fhaachen.si.web.shop.repository.CustomerRepository;
+import de.fhaachen.si.web.shop.repository.OrderIdempotencyRepository;
+import de.fhaachen.si.web.shop.repository.OrderOutboxRepository;
 import de.fhaachen.si.web.shop.repository.OrderRepository;
+import de.fhaachen.si.web.shop.repository.UserRepository;
+import de.fhaachen.si.web.shop.service.StockCache;
 import de.fhaachen.si.web.shop.service.api.IOrderService;
+import de.fhaachen.si.web.shop.service.api.OrderOutcomeUnknownException;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import jakarta.transaction.Transactional;
 
 @Service
 @Profile("erp")
 public class OrderServiceErp implements IOrderService {
+	private static final int STREAM_CHUNK_SIZE = 500;
+
 	@Autowired
 	protected OrderClient orderClient;
 	
@@ -33,19 +66,267 @@ public class OrderServiceErp implements IOrderService {
 	@Autowired
 	protected CustomerRepository customerRepository;
 
+	@Autowired
+	protected StockCache stockCache;
+
+	@Autowired
+	protected OrderOutboxRepository outboxRepository;
+
+	@Autowired
+	protected OrderIdempotencyRepository idempotencyRepository;
+
+	@Autowired
+	protected UserRepository userRepository;
+
+	@Autowired
+	protected ObjectMapper objectMapper;
+
+	public static final String OUTBOX_REFERENCE_PREFIX = "outbox-";
+
+	/**
+	 * Status codes with which the ERP refuses a call before creating anything.
+	 */
+	public static final Set<Status.Code> NOTHING_CREATED = EnumSet.of(Status.Code.INVALID_ARGUMENT,
+			Status.Code.FAILED_PRECONDITION, Status.Code.NOT_FOUND, Status.Code.OUT_OF_RANGE,
+			Status.Code.UNAUTHENTICATED, Status.Code.PERMISSION_DENIED, Status.Code.UNIMPLEMENTED);
+
+    /**
+     * Validates the order and accepts it into the outbox in the same transaction; the ERP call
+     * is made later by {@link OrderOutboxDispatcher}. Until then the returned order carries the
+     * outbox reference as its id, and its progress is available at {@code /orders/outbox/{id}}.
+     *
+     * @throws IllegalArgumentException if the order is incomplete or refers to an unknown customer
+     *         or unknown products
+     */
+    @Transactional
     @Override
     public OrderDTO createOrderFromDTO(OrderDTO order) {
+        validate(order);
+        String reference;
+        try {
+            reference = OUTBOX_REFERENCE_PREFIX + outboxRepository.enqueue(objectMapper.writeValueAsString(order),
+                    order.getCustomerUUID());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Order cannot be serialized: " + e.getOriginalMessage(), e);
+        }
+        order.setId(reference);
+        order.setStatus(OrderStatus.PENDING.name());
+        return order;
+    }
+
+    // the self-call bypasses the proxy of createOrderFromDTO, so the transaction starts here
+    @Transactional
+    @Override
+    public CompletableFuture<OrderDTO> createOrderFromDTOAsync(OrderDTO order) {
+        // only a local insert, so there is nothing to wait for
+        return CompletableFuture.completedFuture(createOrderFromDTO(order));
+    }
+
+    /**
+     * Customers only see their own orders, admins see all. Someone else's order is reported as
+     * not found, so references cannot be probed.
+     */
+    @Override
+    public Optional<Map<String, Object>> findOutboxStatus(String reference, String userEmail) {
+        long id;
+        try {
+            id = Long.parseLong(reference.startsWith(OUTBOX_REFERENCE_PREFIX)
+                    ? reference.substring(OUTBOX_REFERENCE_PREFIX.length())
+                    : reference);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        User user = userRepository.findByEmail(userEmail).orElse(null);
+        if (user == null) {
+            return Optional.empty();
+        }
+        String customerUUID = user.getCustomer() != null && user.getCustomer().getCustomerUUID() != null
+                ? user.getCustomer().getCustomerUUID().toString()
+                : null;
+        return outboxRepository.findById(id)
+                .filter(entry -> user.getRole() == Role.ADMIN
+                        || (customerUUID != null && customerUUID.equals(entry.getCustomerUUID())))
+                .map(entry -> {
+                    Map<String, Object> status = new LinkedHashMap<>();
+                    status.put("reference", OUTBOX_REFERENCE_PREFIX + entry.getId());
+                    status.put("status", entry.getStatus());
+                    status.put("orderId", entry.getErpOrderId());
+                    status.put("attempts", entry.getAttempts());
+                    status.put("nextAttemptAt", entry.getNextAttemptAt());
+                    status.put("error", entry.getLastError());
+                    return status;
+                });
+    }
+
+    private void validate(OrderDTO order) {
+        resolveCustomer(order);
+        if (order.getTotalAmount() == null || order.getTotalAmount() < 0) {
+            throw new IllegalArgumentException("Order has no valid total amount.");
+        }
+        if (order.getItems() == null || order.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Order has no items.");
+        }
+        Set<String> productUuids = new LinkedHashSet<>();
+        for (OrderItemDTO item : order.getItems()) {
+            if (item.getProductUuid() == null || item.getProductUuid().isBlank()) {
+                throw new IllegalArgumentException("Product missing for one of the order items.");
+            }
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Invalid quantity for product " + item.getProductUuid());
+            }
+            productUuids.add(item.getProductUuid());
+        }
+        Map<String, ProductDTO> products = productService.getProductsByUUIDs(productUuids);
+        for (String uuid : productUuids) {
+            if (!products.containsKey(uuid)) {
+                throw new IllegalArgumentException("Unknown product " + uuid);
+            }
+        }
+    }
+
+    /**
+     * Looks up the customer of the order, by id if one is given and by UUID otherwise, and sets
+     * the UUID the ERP knows the customer by. The dispatcher cannot ask the user later, so an
+     * order for an unknown customer must not get into the outbox.
+     */
+    private void resolveCustomer(OrderDTO order) {
+        Optional<Customer> customer;
+        try {
+            if (order.getCustomerId() != null && !order.getCustomerId().isBlank()) {
+                customer = customerRepository.findById(Long.valueOf(order.getCustomerId()));
+            } else if (order.getCustomerUUID() != null && !order.getCustomerUUID().isBlank()) {
+                customer = customerRepository.findByCustomerUUID(UUID.fromString(order.getCustomerUUID()));
+            } else {
+                throw new IllegalArgumentException("Order has no customer.");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid customer id: " + order.getCustomerId(), e);
+        }
+        UUID customerUUID = customer.map(Customer::getCustomerUUID)
+                .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+        order.setCustomerUUID(customerUUID.toString());
+    }
+
+    /**
+     * Validates every order on its own, like {@link #createOrderFromDTO}, and sends the valid ones
+     * to the ERP over one CreateOrders stream, or one CreateOrder call per order if the ERP does
+     * not have CreateOrders. Each order carries its idempotency key, qualified by
+     * {@code keyOwner}, as client reference: if the call is not answered the claims stay, and
+     * when the order is sent again the ERP answers with the order it may already have created.
+     *
+     * @throws StatusRuntimeException with a {@link #NOTHING_CREATED} code if the ERP refused the call
+     * @throws CircuitOpenException if the call was not made
+     * @throws OrderOutcomeUnknownException if the call failed after the orders may have reached the ERP
+     */
+    @Override
+    public List<OrderBatchResultDTO> createOrdersFromDTOs(List<OrderDTO> orderDTOs, String keyOwner) {
+        OrderBatchResultDTO[] results = new OrderBatchResultDTO[orderDTOs.size()];
+        List<OrderRequest> requests = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < orderDTOs.size(); i++) {
+            try {
+                validate(orderDTOs.get(i));
+                requests.add(toOrderRequest(orderDTOs.get(i), keyOwner));
+                positions.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = OrderBatchResultDTO.failed(e.getMessage());
+            }
+        }
+        if (requests.isEmpty()) {
+            return Arrays.asList(results);
+        }
 
+        List<OrderResponse> responses;
+        try {
+            responses = orderClient.createOrdersAsync(requests).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            Status.Code code = Status.fromThrowable(cause).getCode();
+            if (code == Status.Code.UNIMPLEMENTED) {
+                System.err.println("[gRPC] CreateOrders not available, sending the orders one by one");
+                responses = createOneByOne(requests);
+            } else if (cause instanceof CircuitOpenException || NOTHING_CREATED.contains(code)) {
+                // nothing was created, so the caller may release the keys
+                throw cause instanceof RuntimeException runtime ? runtime : e;
+            } else {
+                throw new OrderOutcomeUnknownException("No answer from the ERP: " + cause.getMessage(), cause);
+            }
+        }
+        if (responses.size() != requests.size()) {
+            throw new OrderOutcomeUnknownException(
+                    "ERP answered " + responses.size() + " of " + requests.size() + " orders", null);
+        }
+
+        List<OrderResponse> created = new ArrayList<>();
+        Map<String, String> completedKeys = new HashMap<>();
+        for (int j = 0; j < responses.size(); j++) {
+            OrderResponse res = responses.get(j);
+            OrderDTO order = orderDTOs.get(positions.get(j));
+            if (res.getOrderId().isEmpty()) {
+                results[positions.get(j)] = OrderBatchResultDTO.failed(res.getMessage());
+                continue;
+            }
+            created.add(res);
+            order.getItems().forEach(item -> stockCache.invalidate(item.getProductId()));
+            if (keyOwner != null && order.getIdempotencyKey() != null) {
+                completedKeys.put(order.getIdempotencyKey(), res.getOrderId());
+            }
+        }
+        idempotencyRepository.complete(keyOwner, completedKeys);
+
+        // one bulk product lookup for all created orders
+        Iterator<OrderDTO> prepared = prepareOrders(created).iterator();
+        for (int j = 0; j < responses.size(); j++) {
+            if (results[positions.get(j)] == null) {
+                results[positions.get(j)] = OrderBatchResultDTO.created(prepared.next());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Fallback for an ERP without CreateOrders. An order the ERP refuses gets a response without
+     * order id, like a rejection in CreateOrders; any other failure leaves the outcome of that
+     * order open, and the orders after it are not sent.
+     */
+    private List<OrderResponse> createOneByOne(List<OrderRequest> requests) {
+        List<OrderResponse> responses = new ArrayList<>(requests.size());
+        for (OrderRequest request : requests) {
+            try {
+                responses.add(orderClient.createOrder(request));
+            } catch (StatusRuntimeException e) {
+                if (!NOTHING_CREATED.contains(e.getStatus().getCode())) {
+                    throw new OrderOutcomeUnknownException("No answer from the ERP: " + e.getMessage(), e);
+                }
+                responses.add(OrderResponse.newBuilder().setMessage(e.getStatus().toString()).build());
+            } catch (CircuitOpenException e) {
+                if (responses.isEmpty()) {
+                    throw e;
+                }
+                // earlier orders of the batch may have been created
+                throw new OrderOutcomeUnknownException("No answer from the ERP: " + e.getMessage(), e);
+            }
+        }
+        return responses;
+    }
+
+    private OrderRequest toOrderRequest(OrderDTO order, String keyOwner) {
         OrderRequest.Builder req = OrderRequest.newBuilder()
                 .setCustomerId(order.getCustomerUUID())
                 .setOrderDate(LocalDate.now().toString())
                 .setOrderAmount(order.getTotalAmount())
                 .setCurrency("EUR");
+        if (order.getIdempotencyKey() != null) {
+            // keys are only unique per owner, so the owner is part of the reference
+            req.setClientReference(keyOwner != null
+                    ? "batch:" + keyOwner + ":" + order.getIdempotencyKey()
+                    : order.getIdempotencyKey());
+        }
 
         int idx = 1;
         for (OrderItemDTO item : order.getItems()) {
             OrderItem grpcItem = OrderItem.newBuilder()
-            		    .setItemId(idx)
+                    .setItemId(idx++)
                     .setProductUuid(item.getProductUuid())
                     .setQuantity(item.getQuantity())
                     .setItemAmount(item.getPrice() != null ? item.getPrice() : 0.0)
@@ -53,9 +334,7 @@ public class OrderServiceErp implements IOrderService {
                     .build();
             req.addItems(grpcItem);
         }
-
-        OrderResponse res = orderClient.createOrder(req.build());
-        return prepareOrder(res);
+        return req.build();
     }
 
 
@@ -72,19 +351,184 @@ public class OrderServiceErp implements IOrderService {
         return createdOrder;
     }
 
+	/**
+	 * Pages with the ERP's GetOrdersByCustomer cursor. An ERP without it falls back to
+	 * {@link #scanPage} over StreamOrders.
+	 *
+	 * @throws IllegalArgumentException if the page token is unknown
+	 */
+	@Override
+	public OrderPageDTO getOrdersForCustomer(Long customerId, int pageSize, String pageToken) {
+		String customerUUID = customerUUID(customerId);
+		try {
+			return preparePage(orderClient.getOrdersByCustomer(customerUUID, pageSize, pageToken));
+		} catch (StatusRuntimeException e) {
+			if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+				throw invalidPageToken(e, pageToken);
+			}
+			System.err.println("[gRPC] GetOrdersByCustomer not available, scanning StreamOrders instead");
+			try (Stream<OrderResponse> orders = orderClient.streamOrders()) {
+				return scanPage(orders.iterator(), null, customerUUID, pageSize, pageToken);
+			}
+		}
+	}
+
+	/**
+	 * Pages with the ERP's ListOrders cursor, so every page costs the same no matter how deep
+	 * it is. An ERP without ListOrders falls back to {@link #scanPage}.
+	 *
+	 * @throws IllegalArgumentException if the page token is unknown
+	 */
+	@Override
+	public OrderPageDTO getOrders(OrderStatus status, Long customerId, int pageSize, String pageToken) {
+		String customerUUID = customerId != null ? customerUUID(customerId) : null;
+		try {
+			return preparePage(orderClient.listOrders(status != null ? status.name() : null, customerUUID, pageSize,
+					pageToken));
+		} catch (StatusRuntimeException e) {
+			if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+				throw invalidPageToken(e, pageToken);
+			}
+			System.err.println("[gRPC] ListOrders not available, scanning StreamOrders instead");
+			try (Stream<OrderResponse> orders = orderClient.streamOrders()) {
+				return scanPage(orders.iterator(), status, customerUUID, pageSize, pageToken);
+			}
+		}
+	}
+
+	/**
+	 * Fallback for an ERP without ListOrders or GetOrdersByCustomer: walks its orders from the start, skips up to the
+	 * token (the id of the last order of the previous page), applies the filters and stops as
+	 * soon as the page is full. Page N therefore costs N pages of reading.
+	 */
+	private OrderPageDTO scanPage(Iterator<OrderResponse> orders, OrderStatus status, String customerUUID,
+			int pageSize, String pageToken) {
+		boolean afterToken = pageToken == null || pageToken.isBlank();
+		List<OrderResponse> page = new ArrayList<>(pageSize + 1);
+		while (orders.hasNext() && page.size() <= pageSize) {
+			OrderResponse order = orders.next();
+			if (!afterToken) {
+				afterToken = order.getOrderId().equals(pageToken);
+			} else if ((status == null || status.name().equals(order.getStatus()))
+					&& (customerUUID == null || customerUUID.equals(order.getCustomerId()))) {
+				page.add(order);
+			}
+		}
+		if (!afterToken) {
+			throw new IllegalArgumentException("Invalid page token: " + pageToken);
+		}
+		String nextPageToken = null;
+		if (page.size() > pageSize) {
+			page = page.subList(0, pageSize);
+			nextPageToken = page.get(pageSize - 1).getOrderId();
+		}
+		return new OrderPageDTO(prepareOrders(page), nextPageToken);
+	}
+
+	/**
+	 * The ERP answers an unknown page token with INVALID_ARGUMENT; that is the caller's mistake.
+	 */
+	private static RuntimeException invalidPageToken(Throwable e, String pageToken) {
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		if (Status.fromThrowable(cause).getCode() == Status.Code.INVALID_ARGUMENT) {
+			return new IllegalArgumentException("Invalid page token: " + pageToken, cause);
+		}
+		return cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+	}
+
+    @Override
+    public CompletableFuture<OrderDTO> updateOrderStatusAsync(Long orderId, OrderStatus orderStatus) {
+        return orderClient.changeOrderStatusAsync(orderId.toString(), orderStatus.toString())
+                .thenApply(this::prepareOrder);
+    }
+
 	@Override
-	public List<OrderDTO> getOrdersForCustomer(Long customerId) {
-		return orderClient.getAllOrders().stream().filter(
-				order -> customerRepository.findById(customerId).get().getCustomerUUID().toString().equals(order.getCustomerId()))
-				.map(this::prepareOrder).collect(Collectors.toList());
+	public CompletableFuture<OrderPageDTO> getOrdersForCustomerAsync(Long customerId, int pageSize, String pageToken) {
+		String customerUUID = customerUUID(customerId);
+		return orderClient.getOrdersByCustomerAsync(customerUUID, pageSize, pageToken)
+				.thenApply(this::preparePage)
+				.exceptionallyCompose(e -> {
+					if (Status.fromThrowable(e).getCode() != Status.Code.UNIMPLEMENTED) {
+						return CompletableFuture.failedFuture(invalidPageToken(e, pageToken));
+					}
+					System.err.println("[gRPC] GetOrdersByCustomer not available, scanning StreamOrders instead");
+					return orderClient.getAllOrdersAsync().thenApply(
+							orders -> scanPage(orders.iterator(), null, customerUUID, pageSize, pageToken));
+				});
 	}
 
+	/**
+	 * The ERP knows customers by UUID only.
+	 */
+	private String customerUUID(Long customerId) {
+		return customerRepository.findById(customerId)
+				.orElseThrow(() -> new RuntimeException("Customer not found"))
+				.getCustomerUUID().toString();
+	}
+
+	private OrderPageDTO preparePage(OrderPageResponse page) {
+		String nextPageToken = page.getNextPageToken().isEmpty() ? null : page.getNextPageToken();
+		return new OrderPageDTO(prepareOrders(page.getOrdersList()), nextPageToken);
+	}
+
+	/**
+	 * Non-blocking variant of {@link #getOrders}. Without ListOrders the fallback scan runs on
+	 * the orders collected from StreamOrders, so no request thread waits for the ERP.
+	 */
 	@Override
-	public List<OrderDTO> getAllOrders() {
-		return orderClient.getAllOrders().stream().map(this::prepareOrder).collect(Collectors.toList());
+	public CompletableFuture<OrderPageDTO> getOrdersAsync(OrderStatus status, Long customerId, int pageSize,
+			String pageToken) {
+		String customerUUID = customerId != null ? customerUUID(customerId) : null;
+		return orderClient.listOrdersAsync(status != null ? status.name() : null, customerUUID, pageSize, pageToken)
+				.thenApply(this::preparePage)
+				.exceptionallyCompose(e -> {
+					if (Status.fromThrowable(e).getCode() != Status.Code.UNIMPLEMENTED) {
+						return CompletableFuture.failedFuture(invalidPageToken(e, pageToken));
+					}
+					System.err.println("[gRPC] ListOrders not available, scanning StreamOrders instead");
+					return orderClient.getAllOrdersAsync().thenApply(
+							orders -> scanPage(orders.iterator(), status, customerUUID, pageSize, pageToken));
+				});
+	}
+
+	@Override
+	public void forEachOrder(Consumer<OrderDTO> consumer) {
+		List<OrderResponse> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+		orderClient.streamOrders(order -> {
+			chunk.add(order);
+			if (chunk.size() == STREAM_CHUNK_SIZE) {
+				prepareOrders(chunk).forEach(consumer);
+				chunk.clear();
+			}
+		});
+		prepareOrders(chunk).forEach(consumer);
 	}
 
 	private OrderDTO prepareOrder(OrderResponse res) {
+		return prepareOrders(List.of(res)).get(0);
+	}
+
+	/**
+	 * Hydrates the order items of all given orders from a single bulk product lookup.
+	 */
+	private List<OrderDTO> prepareOrders(List<OrderResponse> responses) {
+		Set<String> productUuids = new LinkedHashSet<>();
+		for (OrderResponse res : responses) {
+			for (var item : res.getItemsList()) {
+				productUuids.add(item.getProductUuid());
+			}
+		}
+		Map<String, ProductDTO> products = productUuids.isEmpty() ? Map.of()
+				: productService.getProductsByUUIDs(productUuids);
+
+		List<OrderDTO> orders = new ArrayList<>(responses.size());
+		for (OrderResponse res : responses) {
+			orders.add(prepareOrder(res, products));
+		}
+		return orders;
+	}
+
+	private OrderDTO prepareOrder(OrderResponse res, Map<String, ProductDTO> products) {
 	    OrderDTO createdOrder = new OrderDTO();
 	    createdOrder.setStatus(res.getStatus());
 	    createdOrder.setTotalAmount(res.getTotalAmount());
@@ -93,10 +537,9 @@ public class OrderServiceErp implements IOrderService {
 	    createdOrder.setItems(new ArrayList<>()); 
 
 	    for (var item : res.getItemsList()) {
-	        List<ProductDTO> products = productService.getProductByUUID(item.getProductUuid());
+	        ProductDTO product = products.get(item.getProductUuid());
 	        
-	        if (!products.isEmpty()) {
-	            ProductDTO product = products.get(0);
+	        if (product != null) {
 	            
 	            OrderItemDTO orderItemDto = new OrderItemDTO();
 	            orderItemDto.setProductId(product.getProductID());
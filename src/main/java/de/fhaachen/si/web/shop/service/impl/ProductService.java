@@ -3,35 +3,103 @@ package de.fhaachen.si.web.shop.service.impl;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import de.fhaachen.si.web.shop.dto.ImportReportDTO;
 import de.fhaachen.si.web.shop.dto.ProductDTO;
 import de.fhaachen.si.web.shop.entity.Product;
-import de.fhaachen.si.web.shop.grpc.StockClient;
 import de.fhaachen.si.web.shop.mapper.ProductMapper;
+import de.fhaachen.si.web.shop.repository.ProductBulkRepository;
 import de.fhaachen.si.web.shop.repository.ProductRepository;
+import de.fhaachen.si.web.shop.service.StockCache;
 import de.fhaachen.si.web.shop.service.api.IProductService;
+import de.fhaachen.si.web.shop.service.file.impl.CsvTokenizer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 @Profile({"local", "default"})
 public class ProductService implements IProductService{
 
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    // marks the end of the CSV input for the import workers
+    private static final List<CsvRecord> END_OF_INPUT = new ArrayList<>();
+
     @Autowired
     protected ProductRepository productRepository;
     
     @Autowired
     protected ProductMapper productMapper;
 
+    @Autowired
+    protected StockCache stockCache;
+
+    @Autowired
+    protected ProductBulkRepository productBulkRepository;
+
+    @Value("${app.import.csv.workers:4}")
+    private int importWorkers;
+
+    @Value("${app.import.csv.batch-size:500}")
+    private int importBatchSize;
+
+    // shared by all CSV imports; concurrent imports queue for the same workers
+    private ExecutorService importExecutor;
+
+    @PostConstruct
+    public void init() {
+        importExecutor = Executors.newFixedThreadPool(importWorkers,
+                Thread.ofPlatform().name("csv-import-", 0).daemon(true).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdownNow();
+    }
+
     @Override
     public List<ProductDTO> getAllProducts() {
         return productRepository.findAll().stream().map(productMapper::productToProductDTO).toList();
     }
 
+    @Override
+    public void forEachProduct(Consumer<ProductDTO> consumer) {
+        Long lastId = 0L;
+        List<Product> page;
+        do {
+            page = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(STREAM_PAGE_SIZE));
+            for (Product product : page) {
+                consumer.accept(productMapper.productToProductDTO(product));
+                lastId = product.getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
     @Override
     public ProductDTO getProductById(String id) {
         return productMapper.productToProductDTO(productRepository.findById(Long.parseLong(id)).orElse(null));
@@ -64,38 +132,234 @@ public class ProductService implements IProductService{
         productRepository.deleteById(id);
     }
 
-    public void importProductsFromFile(MultipartFile file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
-            reader.readLine();
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length < 4) {
-                    throw new IllegalArgumentException("Invalid format at line: " + line);
+    /**
+     * Imports products from a CSV file with the columns id,name,description,price; the first line is a header.
+     * The file is tokenized on the calling thread and handed in batches through a bounded queue to
+     * {@code app.import.csv.workers} workers, each of which upserts its batch in its own transaction.
+     * Bad rows end up in the report instead of aborting the import. Since the rows keep their ids
+     * from the file, the id sequence is moved past them at the end.
+     */
+    public ImportReportDTO importProductsFromFile(MultipartFile file) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportProgress progress = new ImportProgress();
+        BlockingQueue<List<CsvRecord>> queue = new ArrayBlockingQueue<>(importWorkers * 2);
+        List<CompletableFuture<Void>> workers = new ArrayList<>(importWorkers);
+        for (int i = 0; i < importWorkers; i++) {
+            workers.add(CompletableFuture.runAsync(() -> runImportWorker(queue, progress), importExecutor));
+        }
+
+        long totalRows = 0;
+        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            CsvTokenizer tokenizer = new CsvTokenizer(reader);
+            tokenizer.next();
+            List<CsvRecord> batch = new ArrayList<>(importBatchSize);
+            while (true) {
+                List<String> fields;
+                try {
+                    fields = tokenizer.next();
+                } catch (IOException e) {
+                    // a broken quote swallows the rest of the file, so there is nothing left to read
+                    progress.fail(tokenizer.getRecordLine(), e.getMessage());
+                    totalRows++;
+                    break;
+                }
+                if (fields == null) {
+                    break;
+                }
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                totalRows++;
+                batch.add(new CsvRecord(tokenizer.getRecordLine(), fields));
+                if (batch.size() == importBatchSize) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(importBatchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV import interrupted", e);
+        } finally {
+            finishWorkers(queue, workers);
+        }
+        if (progress.imported.get() > 0) {
+            productBulkRepository.syncIdSequence();
+        }
+
+        ImportReportDTO report = progress.toReport(totalRows);
+        report.setDurationMs(System.currentTimeMillis() - start);
+        System.out.printf("CSV import: %d rows, %d imported, %d failed in %d ms%n", report.getTotalRows(),
+                report.getImported(), report.getFailed(), report.getDurationMs());
+        return report;
+    }
+
+    private void runImportWorker(BlockingQueue<List<CsvRecord>> queue, ImportProgress progress) {
+        try {
+            List<CsvRecord> batch;
+            while ((batch = queue.take()) != END_OF_INPUT) {
+                importBatch(batch, progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void importBatch(List<CsvRecord> batch, ImportProgress progress) {
+        List<Product> products = new ArrayList<>(batch.size());
+        List<CsvRecord> parsed = new ArrayList<>(batch.size());
+        for (CsvRecord record : batch) {
+            List<String> fields = record.fields();
+            if (fields.size() < 4) {
+                progress.fail(record.line(), "Expected 4 fields but found " + fields.size());
+                continue;
+            }
+            try {
+                Product product = new Product();
+                product.setId(Long.parseLong(fields.get(0).trim()));
+                product.setName(fields.get(1));
+                product.setDescription(fields.get(2));
+                product.setPrice(Double.parseDouble(fields.get(3).trim()));
+                products.add(product);
+                parsed.add(record);
+            } catch (NumberFormatException e) {
+                progress.fail(record.line(), "Invalid number: " + e.getMessage());
+            }
+        }
+        if (products.isEmpty()) {
+            return;
+        }
+        try {
+            productBulkRepository.upsertAllById(products);
+            progress.imported.addAndGet(products.size());
+        } catch (RuntimeException e) {
+            // one bad row rejects the whole batch, so its rows are retried one by one
+            // to import the good ones and report the real error for the bad ones
+            for (int i = 0; i < products.size(); i++) {
+                try {
+                    productBulkRepository.upsertAllById(List.of(products.get(i)));
+                    progress.imported.incrementAndGet();
+                } catch (RuntimeException rowError) {
+                    progress.fail(parsed.get(i).line(), "Rejected by database: " + databaseMessage(rowError));
                 }
+            }
+        }
+    }
 
-                Long productId = Long.parseLong(parts[0]);
-                String name = parts[1];
-                String description = parts[2];
-                Double price = Double.parseDouble(parts[3]);
+    private static String databaseMessage(RuntimeException e) {
+        return e instanceof NestedRuntimeException nested ? nested.getMostSpecificCause().getMessage() : e.getMessage();
+    }
 
-                Product product = productRepository.findById(productId).orElse(new Product());
-                product.setId(productId);
-                product.setName(name);
-                product.setDescription(description);
-                product.setPrice(price);
+    private void finishWorkers(BlockingQueue<List<CsvRecord>> queue, List<CompletableFuture<Void>> workers) {
+        try {
+            for (int i = 0; i < importWorkers; i++) {
+                queue.put(END_OF_INPUT);
+            }
+            CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).join();
+        } catch (InterruptedException e) {
+            // the workers belong to the shared pool, so they are released instead of interrupted
+            queue.clear();
+            for (int i = 0; i < importWorkers; i++) {
+                queue.offer(END_OF_INPUT);
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                productRepository.save(product);
+    @Override
+    public Map<String, Integer> getStockForProducts(List<String> ids) {
+        return getStockForProductsAsync(ids).join();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Integer>> getStockForProductsAsync(List<String> ids) {
+        Map<String, String> externalIds = new HashMap<>();
+        List<Long> localIds = ids.stream().map(Long::parseLong).toList();
+        for (Product product : productRepository.findAllById(localIds)) {
+            if (product.getProductID() != null && !product.getProductID().isEmpty()) {
+                externalIds.put(product.getId().toString(), product.getProductID());
             }
         }
+        if (externalIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+
+        return stockCache.getStocksAsync(externalIds.values()).thenApply(stocks -> {
+            Map<String, Integer> result = new HashMap<>();
+            externalIds.forEach((id, externalId) -> {
+                Integer stock = stocks.get(externalId);
+                if (stock != null) {
+                    result.put(id, stock);
+                }
+            });
+            return result;
+        });
     }
 
     public int getStockFromGrpc(String productId) {
         try {
-            StockClient client = new StockClient();
-            return client.getStock(String.valueOf(productId));
+            return stockCache.getStock(String.valueOf(productId));
         } catch (Exception e) {
             throw new RuntimeException("Failed to fetch stock: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    // The local catalog lives in the database, so these complete on the caller's thread;
+    // only the stock lookups go to the ERP and are truly asynchronous.
+
+    @Override
+    public CompletableFuture<List<ProductDTO>> getAllProductsAsync() {
+        return CompletableFuture.completedFuture(getAllProducts());
+    }
+
+    @Override
+    public CompletableFuture<ProductDTO> getProductByIdAsync(String id) {
+        return CompletableFuture.completedFuture(getProductById(id));
+    }
+
+    @Override
+    public boolean isCatalogStale() {
+        // the catalog lives in the local database
+        return false;
+    }
+
+    @Override
+    public boolean isStockStale(String productId) {
+        return stockCache.isStale(productId);
+    }
+
+    @Override
+    public CompletableFuture<Integer> getStockFromGrpcAsync(String productId) {
+        return stockCache.getStockAsync(productId);
+    }
+
+    private record CsvRecord(int line, List<String> fields) {
+    }
+
+    private static final class ImportProgress {
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final List<ImportReportDTO.LineError> errors = Collections.synchronizedList(new ArrayList<>());
+
+        void fail(int line, String message) {
+            failed.incrementAndGet();
+            // a completely broken file should not turn into a huge report
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportReportDTO.LineError(line, message));
+            }
+        }
+
+        ImportReportDTO toReport(long totalRows) {
+            ImportReportDTO report = new ImportReportDTO();
+            report.setTotalRows(totalRows);
+            report.setImported(imported.get());
+            report.setFailed(failed.get());
+            List<ImportReportDTO.LineError> sorted = new ArrayList<>(errors);
+            sorted.sort(Comparator.comparingInt(ImportReportDTO.LineError::getLine));
+            report.setErrors(sorted);
+            return report;
+        }
+    }
+}
@@ -1,38 +1,43 @@
 package de.fhaachen.si.web.shop.service.impl;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
 import de.fhaachen.si.web.shop.dto.ProductDTO;
-import de.fhaachen.si.web.shop.grpc.ProductClient;
-import de.fhaachen.si.web.shop.grpc.ProductResponse;
-import de.fhaachen.si.web.shop.grpc.StockClient;
+import de.fhaachen.si.web.shop.service.StockCache;
 import de.fhaachen.si.web.shop.service.api.IProductService;
+import de.fhaachen.si.web.shop.service.catalog.ErpProductCatalog;
 
 @Service
 @Profile("erp")
 public class ProductServiceErp implements IProductService{
 	
 	@Autowired
-	protected StockClient stockClient;
+	protected StockCache stockCache;
 	
 	@Autowired
-	protected ProductClient productClient;
+	protected ErpProductCatalog productCatalog;
 
 	@Override
 	public List<ProductDTO> getAllProducts() {
-		return productClient.getAllProducts().stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+		return productCatalog.getAllProducts();
+	}
+
+	@Override
+	public void forEachProduct(Consumer<ProductDTO> consumer) {
+		productCatalog.getAllProducts().forEach(consumer);
 	}
 
 	@Override
 	public ProductDTO getProductById(String id) {
-        return getAllProducts().stream().filter(p -> p.getProductID().equals(id)).findFirst().get();
+		return productCatalog.findByProductCode(id);
 	}
 
 	@Override
@@ -53,28 +58,61 @@ public class ProductServiceErp implements IProductService{
 	@Override
 	public int getStockFromGrpc(String productId) {
         try {
-            StockClient client = new StockClient();
-            return client.getStock(String.valueOf(productId));
+            return stockCache.getStock(String.valueOf(productId));
         } catch (Exception e) {
             throw new RuntimeException("Failed to fetch stock: " + e.getMessage(), e);
         }
 	}
 	
+	@Override
+	public Map<String, Integer> getStockForProducts(List<String> ids) {
+		return getStockForProductsAsync(ids).join();
+	}
+
+	@Override
+	public CompletableFuture<List<ProductDTO>> getAllProductsAsync() {
+		return productCatalog.getAllProductsAsync();
+	}
+
+	@Override
+	public CompletableFuture<ProductDTO> getProductByIdAsync(String id) {
+		return productCatalog.findByProductCodeAsync(id);
+	}
+
+	@Override
+	public CompletableFuture<Integer> getStockFromGrpcAsync(String productId) {
+		return stockCache.getStockAsync(productId);
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Integer>> getStockForProductsAsync(List<String> ids) {
+		// waits for the catalog only if it has to be (re)loaded; the ids are then resolved in-memory
+		return productCatalog.filterKnownProductCodesAsync(ids).thenCompose(known -> {
+			if (known.isEmpty()) {
+				return CompletableFuture.completedFuture(Map.of());
+			}
+			// in the ERP profile the product id is the ERP product code, so no translation is needed
+			return stockCache.getStocksAsync(known);
+		});
+	}
+
+	@Override
+	public boolean isCatalogStale() {
+		return productCatalog.isStale();
+	}
+
+	@Override
+	public boolean isStockStale(String productId) {
+		return stockCache.isStale(productId);
+	}
+
 	public List<ProductDTO> getProductByUUID(String uuid) {
-        return getAllProducts().stream().filter(p -> p.getProductUUID().equals(uuid)).collect(Collectors.toList());
+		ProductDTO product = productCatalog.findByUUID(uuid);
+		return product != null ? List.of(product) : List.of();
+	}
+
+	public Map<String, ProductDTO> getProductsByUUIDs(Collection<String> uuids) {
+		return productCatalog.findAllByUUIDs(uuids);
 	}
-	
-	
-    private ProductDTO toDTO(ProductResponse p) {
-        ProductDTO dto = new ProductDTO();
-        dto.setProductID(p.getProductCode());
-        dto.setProductUUID(p.getId());
-        dto.setName(p.getName());
-        dto.setDescription(p.getDescription());
-        dto.setPrice(p.getPrice());
-        dto.setCurrency(p.getCurrency());
-        dto.setStock(p.getStock());
-        return dto;
-    }
 
 }
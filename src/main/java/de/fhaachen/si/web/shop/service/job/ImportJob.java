@@ -0,0 +1,145 @@
+package de.fhaachen.si.web.shop.service.job;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import de.fhaachen.si.web.shop.service.file.api.ImportListener;
+import de.fhaachen.si.web.shop.service.file.api.ImportPhase;
+
+/**
+ * One run of the product sync: its status, the time spent in each phase and the row counts.
+ * Every change is reported to the update callback so it can be pushed to subscribers.
+ */
+public class ImportJob implements ImportListener {
+
+	public enum Status {
+		QUEUED, RUNNING, SUCCEEDED, UNCHANGED, FAILED
+	}
+
+	private final String id = UUID.randomUUID().toString();
+	private final String trigger;
+	private final Instant createdAt = Instant.now();
+	private final Consumer<ImportJob> onUpdate;
+
+	private Status status = Status.QUEUED;
+	private ImportPhase phase;
+	private long phaseStartedNanos;
+	private final Map<ImportPhase, Long> phaseNanos = new EnumMap<>(ImportPhase.class);
+	private long rowsRead;
+	private long rowsWritten;
+	private long rowsDeleted;
+	private Instant startedAt;
+	private Instant finishedAt;
+	private String error;
+
+	ImportJob(String trigger, Consumer<ImportJob> onUpdate) {
+		this.trigger = trigger;
+		this.onUpdate = onUpdate;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public synchronized Status getStatus() {
+		return status;
+	}
+
+	public synchronized boolean isFinished() {
+		return status != Status.QUEUED && status != Status.RUNNING;
+	}
+
+	@Override
+	public void phase(ImportPhase next) {
+		synchronized (this) {
+			if (next == phase) {
+				return;
+			}
+			endPhase();
+			phase = next;
+			phaseStartedNanos = System.nanoTime();
+		}
+		onUpdate.accept(this);
+	}
+
+	@Override
+	public void rowsRead(int count) {
+		synchronized (this) {
+			rowsRead += count;
+		}
+		onUpdate.accept(this);
+	}
+
+	@Override
+	public void rowsWritten(int count) {
+		synchronized (this) {
+			rowsWritten += count;
+		}
+	}
+
+	@Override
+	public void rowsDeleted(int count) {
+		synchronized (this) {
+			rowsDeleted += count;
+		}
+	}
+
+	void start() {
+		synchronized (this) {
+			status = Status.RUNNING;
+			startedAt = Instant.now();
+		}
+		onUpdate.accept(this);
+	}
+
+	void finish(Status result, String errorMessage) {
+		synchronized (this) {
+			endPhase();
+			phase = null;
+			status = result;
+			error = errorMessage;
+			finishedAt = Instant.now();
+		}
+		onUpdate.accept(this);
+	}
+
+	public synchronized Map<String, Object> toMap() {
+		Map<String, Object> body = new LinkedHashMap<>();
+		body.put("id", id);
+		body.put("trigger", trigger);
+		body.put("status", status);
+		body.put("phase", phase);
+		body.put("createdAt", createdAt.toString());
+		body.put("startedAt", startedAt == null ? null : startedAt.toString());
+		body.put("finishedAt", finishedAt == null ? null : finishedAt.toString());
+
+		long durationMs = startedAt == null ? 0
+				: Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+		body.put("durationMs", durationMs);
+
+		Map<String, Long> phases = new LinkedHashMap<>();
+		phaseNanos.forEach((p, nanos) -> phases.put(p.name(), nanos / 1_000_000));
+		if (phase != null) {
+			phases.merge(phase.name(), (System.nanoTime() - phaseStartedNanos) / 1_000_000, Long::sum);
+		}
+		body.put("phaseDurationsMs", phases);
+
+		body.put("rowsRead", rowsRead);
+		body.put("rowsWritten", rowsWritten);
+		body.put("rowsDeleted", rowsDeleted);
+		body.put("rowsPerSecond", durationMs == 0 ? 0 : rowsRead * 1000 / durationMs);
+		body.put("error", error);
+		return body;
+	}
+
+	private void endPhase() {
+		if (phase != null) {
+			phaseNanos.merge(phase, System.nanoTime() - phaseStartedNanos, Long::sum);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package de.fhaachen.si.web.shop.service.job;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import de.fhaachen.si.web.shop.dto.ProductSyncDTO;
+import de.fhaachen.si.web.shop.service.ProductSyncScheduler;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs product syncs as background jobs on a dedicated thread and keeps the most recent
+ * jobs for status queries. Progress is pushed to Server-Sent-Event subscribers.
+ * <p>
+ * At most one sync is in flight. A manual trigger during a run joins that run; a scheduled
+ * tick is either skipped or coalesced into a single follow-up run, depending on
+ * {@code app.import.jobs.overlap-policy}.
+ */
+@Service
+public class ImportJobService {
+
+	private static final int MAX_RETAINED_JOBS = 50;
+
+	public enum OverlapPolicy {
+		SKIP, COALESCE
+	}
+
+	@Autowired
+	protected ProductSyncScheduler scheduler;
+
+	@Value("${app.import.jobs.sse-timeout-ms:1800000}")
+	private long sseTimeoutMs;
+
+	@Value("${app.import.jobs.overlap-policy:COALESCE}")
+	private OverlapPolicy overlapPolicy;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(
+			Thread.ofPlatform().name("import-job-", 0).factory());
+
+	private final Map<String, ImportJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) {
+			return size() > MAX_RETAINED_JOBS;
+		}
+	});
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	// guarded by this
+	private ImportJob active;
+	private ImportJob followUp;
+	private ProductSyncDTO followUpRequest;
+	private long skippedTicks;
+
+	/**
+	 * Starts a sync unless one is in flight.
+	 *
+	 * @return the job that will carry out the request, or null if a scheduled tick was skipped
+	 */
+	public synchronized ImportJob submit(ProductSyncDTO dto, String trigger) {
+		if (active == null) {
+			active = newJob(trigger);
+			start(active, dto);
+			return active;
+		}
+		if (!"scheduled".equals(trigger)) {
+			System.out.println("Product sync already in flight, joining job " + active.getId());
+			return active;
+		}
+		if (overlapPolicy == OverlapPolicy.SKIP) {
+			skippedTicks++;
+			System.out.println("Product sync still running, skipping scheduled tick");
+			return null;
+		}
+		if (followUp == null) {
+			followUp = newJob(trigger);
+		} else {
+			skippedTicks++;
+		}
+		// the follow-up uses the settings of the latest tick
+		followUpRequest = dto;
+		return followUp;
+	}
+
+	public synchronized Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("activeJob", active == null ? null : active.getId());
+		stats.put("followUpJob", followUp == null ? null : followUp.getId());
+		stats.put("overlapPolicy", overlapPolicy);
+		stats.put("skippedTicks", skippedTicks);
+		return stats;
+	}
+
+	public ImportJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Streams progress of one job, or of all jobs if {@code jobId} is null. A job stream
+	 * starts with the current state and completes once the job has finished.
+	 */
+	public SseEmitter subscribe(String jobId) {
+		SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+		Subscription subscription = new Subscription(jobId, emitter);
+		emitter.onCompletion(() -> subscriptions.remove(subscription));
+		emitter.onTimeout(() -> subscriptions.remove(subscription));
+		emitter.onError(e -> subscriptions.remove(subscription));
+		subscriptions.add(subscription);
+
+		if (jobId != null) {
+			ImportJob job = jobs.get(jobId);
+			if (job != null) {
+				publish(job);
+			}
+		}
+		return emitter;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private ImportJob newJob(String trigger) {
+		ImportJob job = new ImportJob(trigger, this::publish);
+		jobs.put(job.getId(), job);
+		return job;
+	}
+
+	private void start(ImportJob job, ProductSyncDTO dto) {
+		executor.execute(() -> {
+			try {
+				run(job, dto);
+			} finally {
+				runFollowUp();
+			}
+		});
+	}
+
+	private synchronized void runFollowUp() {
+		active = followUp;
+		if (followUp != null) {
+			start(followUp, followUpRequest);
+			followUp = null;
+			followUpRequest = null;
+		}
+	}
+
+	private void run(ImportJob job, ProductSyncDTO dto) {
+		job.start();
+		try {
+			boolean imported = scheduler.runSync(dto.getEndpoint(), dto.getUsername(), dto.getPassword(), job);
+			job.finish(imported ? ImportJob.Status.SUCCEEDED : ImportJob.Status.UNCHANGED, null);
+		} catch (Exception e) {
+			System.err.println("Import job " + job.getId() + " failed: " + e.getMessage());
+			job.finish(ImportJob.Status.FAILED, e.getMessage());
+		}
+	}
+
+	private void publish(ImportJob job) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		Map<String, Object> state = job.toMap();
+		boolean finished = job.isFinished();
+		for (Subscription subscription : subscriptions) {
+			if (subscription.jobId != null && !subscription.jobId.equals(job.getId())) {
+				continue;
+			}
+			try {
+				subscription.emitter.send(SseEmitter.event().name(finished ? "done" : "progress").data(state));
+				if (finished && subscription.jobId != null) {
+					subscription.emitter.complete();
+				}
+			} catch (IOException | IllegalStateException e) {
+				// the client went away
+				subscriptions.remove(subscription);
+			}
+		}
+	}
+
+	private static final class Subscription {
+		final String jobId;
+		final SseEmitter emitter;
+
+		Subscription(String jobId, SseEmitter emitter) {
+			this.jobId = jobId;
+			this.emitter = emitter;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package de.fhaachen.si.web.shop.service.catalog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.fhaachen.si.web.shop.dto.ProductDTO;
+
+class CatalogSnapshotFileTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void roundTripKeepsEveryField() throws IOException {
+		ProductDTO product = product(42, "P-42");
+		product.setImageUrl("https://example.org/42.png");
+		Path file = dir.resolve("catalog.bin");
+
+		CatalogSnapshotFile.write(file, List.of(product));
+		CatalogSnapshotFile snapshot = CatalogSnapshotFile.open(file);
+
+		assertThat(snapshot.size()).isEqualTo(1);
+		assertThat(snapshot.get(0)).usingRecursiveComparison().isEqualTo(product);
+		assertThat(snapshot.asList()).hasSize(1);
+	}
+
+	@Test
+	void findsEveryRowByProductIdAndUUID() throws IOException {
+		List<ProductDTO> products = new ArrayList<>();
+		for (int i = 1; i <= 2_000; i++) {
+			products.add(product(i, "P-" + i));
+		}
+		Path file = dir.resolve("catalog.bin");
+
+		CatalogSnapshotFile.write(file, products);
+		CatalogSnapshotFile snapshot = CatalogSnapshotFile.open(file);
+
+		for (ProductDTO product : products) {
+			assertThat(snapshot.findByProductId(product.getProductID()).getId()).isEqualTo(product.getId());
+			assertThat(snapshot.findByUUID(product.getProductUUID()).getId()).isEqualTo(product.getId());
+		}
+		assertThat(snapshot.findByProductId("P-0")).isNull();
+		assertThat(snapshot.findByProductId("P-2001")).isNull();
+		assertThat(snapshot.findByUUID("uuid-P-2001")).isNull();
+		assertThat(snapshot.findByProductId(null)).isNull();
+		assertThat(snapshot.findByUUID(null)).isNull();
+	}
+
+	@Test
+	void keepsNullStringsApartFromEmptyOnes() throws IOException {
+		ProductDTO nulls = new ProductDTO();
+		nulls.setId(1L);
+		ProductDTO empty = product(2, "");
+		empty.setName("");
+		empty.setDescription("");
+		Path file = dir.resolve("catalog.bin");
+
+		CatalogSnapshotFile.write(file, List.of(nulls, empty));
+		CatalogSnapshotFile snapshot = CatalogSnapshotFile.open(file);
+
+		ProductDTO first = snapshot.get(0);
+		assertThat(first.getProductID()).isNull();
+		assertThat(first.getProductUUID()).isNull();
+		assertThat(first.getName()).isNull();
+		assertThat(first.getDescription()).isNull();
+		assertThat(first.getCurrency()).isNull();
+		assertThat(first.getImageUrl()).isNull();
+		assertThat(snapshot.get(1).getName()).isEmpty();
+		assertThat(snapshot.findByProductId("").getId()).isEqualTo(2L);
+	}
+
+	@Test
+	void emptyCatalog() throws IOException {
+		Path file = dir.resolve("catalog.bin");
+
+		CatalogSnapshotFile.write(file, List.of());
+		CatalogSnapshotFile snapshot = CatalogSnapshotFile.open(file);
+
+		assertThat(snapshot.size()).isZero();
+		assertThat(snapshot.asList()).isEmpty();
+		assertThat(snapshot.findByProductId("P-1")).isNull();
+		assertThat(snapshot.findByUUID("uuid-P-1")).isNull();
+	}
+
+	@Test
+	void rejectsWrongMagic() throws IOException {
+		Path file = dir.resolve("catalog.bin");
+		CatalogSnapshotFile.write(file, List.of(product(1, "P-1")));
+		overwriteInt(file, 0, 0xCAFEBABE);
+
+		assertThatThrownBy(() -> CatalogSnapshotFile.open(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("Not a catalog snapshot");
+	}
+
+	@Test
+	void rejectsWrongVersion() throws IOException {
+		Path file = dir.resolve("catalog.bin");
+		CatalogSnapshotFile.write(file, List.of(product(1, "P-1")));
+		overwriteInt(file, 4, 1);
+
+		assertThatThrownBy(() -> CatalogSnapshotFile.open(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("Not a catalog snapshot");
+	}
+
+	@Test
+	void rejectsTruncatedFile() throws IOException {
+		Path file = dir.resolve("catalog.bin");
+		CatalogSnapshotFile.write(file, List.of(product(1, "P-1"), product(2, "P-2")));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(40);
+		}
+
+		assertThatThrownBy(() -> CatalogSnapshotFile.open(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("Truncated catalog snapshot");
+	}
+
+	@Test
+	void rejectsFileShorterThanHeader() throws IOException {
+		Path file = Files.write(dir.resolve("catalog.bin"), new byte[] { 0x57, 0x53 });
+
+		assertThatThrownBy(() -> CatalogSnapshotFile.open(file)).isInstanceOf(IOException.class);
+	}
+
+	private static ProductDTO product(long id, String productID) {
+		ProductDTO product = new ProductDTO();
+		product.setId(id);
+		product.setProductID(productID);
+		product.setProductUUID("uuid-" + productID);
+		product.setName("Product " + id);
+		product.setDescription("Description of product " + id);
+		product.setPrice(id * 1.5);
+		product.setCurrency("EUR");
+		product.setStock((int) id % 17);
+		return product;
+	}
+
+	private static void overwriteInt(Path file, long position, int value) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+		}
+	}
+}